@@ -0,0 +1,72 @@
+package com.group.javafastfile.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Minimal client for the upload and download endpoints, on the JDK HTTP client so the
+ * measurements do not depend on the client stack of the application under test.
+ */
+public class ApiClient {
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final String baseUrl;
+
+    public ApiClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Upload a file as the {@code file} part of a multipart form.
+     */
+    public void upload(LoadTestConfig.Mode mode, String filename, byte[] content) throws IOException, InterruptedException {
+        String boundary = "loadtest-" + UUID.randomUUID();
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + mode.getUploadPath()))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, content, tail)))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("Upload of " + filename + " failed with " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    /**
+     * Download a file and discard its content.
+     *
+     * @return the number of bytes received
+     */
+    public long download(LoadTestConfig.Mode mode, String filename) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + mode.getDownloadPath() + filename)).GET().build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException("Download of " + filename + " failed with " + response.statusCode() + ": "
+                        + new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            byte[] buffer = new byte[64 * 1024];
+            long received = 0;
+            for (int read; (read = body.read(buffer)) != -1; ) {
+                received += read;
+            }
+            return received;
+        }
+    }
+}
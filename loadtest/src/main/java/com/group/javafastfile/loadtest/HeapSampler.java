@@ -0,0 +1,72 @@
+package com.group.javafastfile.loadtest;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Samples heap use while a phase runs. The application runs in the harness JVM, so the peak
+ * includes the files the clients hold in flight: at most one per client.
+ */
+public class HeapSampler implements AutoCloseable {
+
+    private static final long INTERVAL_MILLIS = 20;
+
+    public record Summary(long peakHeapBytes, long peakDirectBytes, long gcCount, long gcMillis) {
+    }
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final Thread sampler;
+    private final long startGcCount;
+    private final long startGcMillis;
+    private volatile long peakHeapBytes;
+    private volatile long peakDirectBytes;
+    private volatile boolean running = true;
+
+    public HeapSampler() {
+        startGcCount = gcCount();
+        startGcMillis = gcMillis();
+        sampler = new Thread(this::sample, "heap-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    private void sample() {
+        while (running) {
+            peakHeapBytes = Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+            // The fingerprint index lives off-heap, in direct buffers
+            long direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                    .filter(pool -> pool.getName().equals("direct"))
+                    .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                    .sum();
+            peakDirectBytes = Math.max(peakDirectBytes, direct);
+            try {
+                Thread.sleep(INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        sampler.interrupt();
+        sampler.join();
+    }
+
+    public Summary summarize() {
+        return new Summary(peakHeapBytes, peakDirectBytes, gcCount() - startGcCount, gcMillis() - startGcMillis);
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(count -> count > 0).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(time -> time > 0).sum();
+    }
+}
@@ -0,0 +1,48 @@
+package com.group.javafastfile.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of one kind of operation. Every sample is kept, a run has at most a few thousand.
+ */
+public class LatencyRecorder {
+
+    public record Summary(int count, int errors, long bytes, double opsPerSecond, double megabytesPerSecond,
+                          double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+    }
+
+    private long[] nanos = new long[1024];
+    private int count;
+    private int errors;
+    private long bytes;
+
+    public synchronized void record(long elapsedNanos, long transferred) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+        }
+        nanos[count++] = elapsedNanos;
+        bytes += transferred;
+    }
+
+    public synchronized void recordError() {
+        errors++;
+    }
+
+    public synchronized Summary summarize(long wallNanos) {
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        double seconds = wallNanos / 1e9;
+        return new Summary(count, errors, bytes, count / seconds, bytes / seconds / (1024 * 1024),
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                count == 0 ? 0 : sorted[count - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        // Nearest rank, so a reported percentile is always a latency that was actually observed
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,301 @@
+package com.group.javafastfile.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.group.javafastfile.JavaFastfileApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end load test of the upload and download endpoints.
+ * <p>
+ * For each mode the application is started on a random port, with its own storage directory and
+ * its own database in an embedded Postgres. One file per family is uploaded first, then a warm-up
+ * and a measured run of mixed operations are spread over the configured number of clients: uploads
+ * of a new version of a random family, and downloads of a random file stored so far. Chunked and
+ * raw modes see the same files in the same order, so their results can be compared directly.
+ * <p>
+ * The database is a real Postgres rather than H2 in PostgreSQL mode, so query latencies and the
+ * reported database size ({@code pg_database_size}) are those of the engine used in production.
+ * <p>
+ * Results are printed and written as JSON under {@code loadtest.output}, to keep next to the
+ * results of other releases or deployments. Run with {@code ./gradlew :loadtest:loadTest}.
+ */
+public class LoadTest {
+
+    private static final int MAX_LOGGED_ERRORS = 10;
+
+    public record ModeResult(LoadTestConfig.Mode mode, double wallSeconds, LatencyRecorder.Summary uploads,
+                             LatencyRecorder.Summary downloads, HeapSampler.Summary memory,
+                             long logicalBytes, long storageBytes, long databaseBytes, double storedRatio) {
+    }
+
+    private final LoadTestConfig config;
+    private final Workload workload;
+    private final AtomicInteger loggedErrors = new AtomicInteger();
+
+    public LoadTest(LoadTestConfig config) {
+        this.config = config;
+        this.workload = new Workload(config.dataset(), config.fileSize(), config.seed());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        List<ModeResult> results = new LoadTest(config).run();
+        printReport(config, results);
+        writeReport(config, results);
+    }
+
+    public List<ModeResult> run() throws Exception {
+        List<ModeResult> results = new ArrayList<>();
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            for (LoadTestConfig.Mode mode : config.modes()) {
+                results.add(runMode(postgres, mode));
+            }
+        }
+        return results;
+    }
+
+    private ModeResult runMode(EmbeddedPostgres postgres, LoadTestConfig.Mode mode) throws Exception {
+        String database = "fastfile_" + mode.name().toLowerCase(Locale.ROOT);
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + database);
+        }
+        Path storageRoot = Files.createTempDirectory("fastfile-loadtest-" + database);
+
+        try (ConfigurableApplicationContext context = startApplication(postgres.getJdbcUrl("postgres", database), storageRoot)) {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            ApiClient client = new ApiClient("http://localhost:" + port);
+            Store store = new Store(config.families());
+
+            System.out.printf("[%s] seeding %d families of %d bytes%n", mode, config.families(), config.fileSize());
+            runOperations(client, mode, store, config.families(), 1, new LatencyRecorder(), new LatencyRecorder());
+            System.out.printf("[%s] warming up with %d operations%n", mode, config.warmupOperations());
+            runOperations(client, mode, store, config.warmupOperations(), config.uploadRatio(), new LatencyRecorder(), new LatencyRecorder());
+
+            System.out.printf("[%s] running %d operations on %d clients%n", mode, config.operations(), config.clients());
+            LatencyRecorder uploads = new LatencyRecorder();
+            LatencyRecorder downloads = new LatencyRecorder();
+            System.gc();
+            long startNanos;
+            long wallNanos;
+            HeapSampler.Summary memory;
+            try (HeapSampler heapSampler = new HeapSampler()) {
+                startNanos = System.nanoTime();
+                runOperations(client, mode, store, config.operations(), config.uploadRatio(), uploads, downloads);
+                wallNanos = System.nanoTime() - startNanos;
+                memory = heapSampler.summarize();
+            }
+
+            long storageBytes = directorySize(storageRoot);
+            Long databaseBytes = context.getBean(JdbcTemplate.class)
+                    .queryForObject("SELECT pg_database_size(current_database())", Long.class);
+            long logicalBytes = store.logicalBytes.get();
+            return new ModeResult(mode, wallNanos / 1e9, uploads.summarize(wallNanos), downloads.summarize(wallNanos),
+                    memory, logicalBytes, storageBytes, databaseBytes == null ? 0 : databaseBytes,
+                    logicalBytes == 0 ? 0 : (double) storageBytes / logicalBytes);
+        } finally {
+            FileSystemUtils.deleteRecursively(storageRoot);
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication(String jdbcUrl, Path storageRoot) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.datasource.url", jdbcUrl);
+        properties.put("spring.datasource.username", "postgres");
+        properties.put("spring.datasource.password", "");
+        properties.put("fastfile.storage.root", storageRoot.toString());
+        // A collection mid-run would make runs incomparable, and nothing is deleted anyway
+        properties.put("fastfile.gc.enabled", false);
+        // Per-upload INFO lines would cost more than some of the requests they describe
+        properties.put("logging.level.com.group.javafastfile", "WARN");
+        properties.putAll(config.appProperties());
+        return new SpringApplicationBuilder(JavaFastfileApplication.class)
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Spread {@code count} operations over the clients. Each client draws its operations from its
+     * own seeded generator; uploads always go to a new version of a family.
+     */
+    private void runOperations(ApiClient client, LoadTestConfig.Mode mode, Store store, int count, double uploadRatio,
+                               LatencyRecorder uploads, LatencyRecorder downloads) throws Exception {
+        AtomicInteger remaining = new AtomicInteger(count);
+        ExecutorService clients = Executors.newFixedThreadPool(config.clients());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int clientId = 0; clientId < config.clients(); clientId++) {
+                Random random = new Random(config.seed() * 7919 + clientId * 104_729L + count);
+                futures.add(clients.submit(() -> {
+                    while (remaining.getAndDecrement() > 0) {
+                        if (store.isEmpty() || random.nextDouble() < uploadRatio) {
+                            upload(client, mode, store, random, uploads);
+                        } else {
+                            download(client, mode, store, random, downloads);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private void upload(ApiClient client, LoadTestConfig.Mode mode, Store store, Random random, LatencyRecorder recorder) {
+        int family = store.nextFamily(random);
+        int version = store.nextVersion(family);
+        String filename = Workload.filename(family, version);
+        byte[] content = workload.generate(family, version);
+        long startNanos = System.nanoTime();
+        try {
+            client.upload(mode, filename, content);
+            recorder.record(System.nanoTime() - startNanos, content.length);
+            store.add(filename, content.length);
+        } catch (Exception e) {
+            recorder.recordError();
+            logError(e);
+        }
+    }
+
+    private void download(ApiClient client, LoadTestConfig.Mode mode, Store store, Random random, LatencyRecorder recorder) {
+        Store.StoredFile file = store.pick(random);
+        long startNanos = System.nanoTime();
+        try {
+            long received = client.download(mode, file.filename());
+            if (received != file.size()) {
+                throw new IOException("Downloaded " + received + " bytes of " + file.filename() + ", expected " + file.size());
+            }
+            recorder.record(System.nanoTime() - startNanos, received);
+        } catch (Exception e) {
+            recorder.recordError();
+            logError(e);
+        }
+    }
+
+    private void logError(Exception e) {
+        if (loggedErrors.incrementAndGet() <= MAX_LOGGED_ERRORS) {
+            System.err.println("Operation failed: " + e.getMessage());
+        }
+    }
+
+    private static long directorySize(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static void printReport(LoadTestConfig config, List<ModeResult> results) {
+        System.out.printf("%nDataset %s, %d families, %d bytes per file, %d clients, %d operations, %.0f%% uploads%n%n",
+                config.dataset(), config.families(), config.fileSize(), config.clients(), config.operations(),
+                config.uploadRatio() * 100);
+        System.out.printf("%-8s %-9s %6s %6s %9s %9s %9s %9s %9s %9s%n",
+                "mode", "operation", "count", "errors", "ops/s", "MB/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (ModeResult result : results) {
+            printLine(result.mode(), "upload", result.uploads());
+            printLine(result.mode(), "download", result.downloads());
+        }
+        System.out.printf("%n%-8s %12s %12s %8s %8s %14s %14s %14s %8s%n",
+                "mode", "heap peak MB", "direct MB", "GCs", "GC ms", "logical MB", "storage MB", "database MB", "stored");
+        for (ModeResult result : results) {
+            HeapSampler.Summary memory = result.memory();
+            System.out.printf("%-8s %12.1f %12.1f %8d %8d %14.1f %14.1f %14.1f %7.1f%%%n",
+                    result.mode(), megabytes(memory.peakHeapBytes()), megabytes(memory.peakDirectBytes()),
+                    memory.gcCount(), memory.gcMillis(), megabytes(result.logicalBytes()),
+                    megabytes(result.storageBytes()), megabytes(result.databaseBytes()), result.storedRatio() * 100);
+        }
+    }
+
+    private static void printLine(LoadTestConfig.Mode mode, String operation, LatencyRecorder.Summary summary) {
+        System.out.printf("%-8s %-9s %6d %6d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                mode, operation, summary.count(), summary.errors(), summary.opsPerSecond(), summary.megabytesPerSecond(),
+                summary.p50Millis(), summary.p90Millis(), summary.p99Millis(), summary.maxMillis());
+    }
+
+    private static void writeReport(LoadTestConfig config, List<ModeResult> results) throws IOException {
+        Files.createDirectories(config.output());
+        Path reportFile = config.output().resolve(
+                "loadtest-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("results", results);
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(reportFile.toFile(), report);
+        System.out.printf("%nReport written to %s%n", reportFile.toAbsolutePath());
+    }
+
+    private static double megabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    /**
+     * Files uploaded so far in one mode, and the next version of each family.
+     */
+    private static final class Store {
+
+        record StoredFile(String filename, long size) {
+        }
+
+        private final List<StoredFile> files = new ArrayList<>();
+        private final AtomicIntegerArray nextVersions;
+        private final AtomicInteger nextSeedFamily = new AtomicInteger();
+        private final AtomicLong logicalBytes = new AtomicLong();
+
+        Store(int families) {
+            nextVersions = new AtomicIntegerArray(families);
+        }
+
+        int nextFamily(Random random) {
+            // The first upload of every family comes before any random pick
+            int seedFamily = nextSeedFamily.getAndIncrement();
+            return seedFamily < nextVersions.length() ? seedFamily : random.nextInt(nextVersions.length());
+        }
+
+        int nextVersion(int family) {
+            return nextVersions.getAndIncrement(family);
+        }
+
+        synchronized void add(String filename, long size) {
+            files.add(new StoredFile(filename, size));
+            logicalBytes.addAndGet(size);
+        }
+
+        synchronized boolean isEmpty() {
+            return files.isEmpty();
+        }
+
+        synchronized StoredFile pick(Random random) {
+            return files.get(random.nextInt(files.size()));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.group.javafastfile.loadtest;
+
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Load test settings, read from {@code loadtest.*} system properties so the Gradle task can pass
+ * them with {@code -P}. Properties under {@code loadtest.app.} are handed to the application as is,
+ * e.g. {@code -Ploadtest.app.fastfile.cache.max-size=0}.
+ */
+public record LoadTestConfig(List<Mode> modes, int clients, int operations, int warmupOperations,
+                             double uploadRatio, int fileSize, int families, String dataset, long seed,
+                             Path output, Map<String, String> appProperties) {
+
+    public enum Mode {
+        CHUNKED("/api/sendFile", "/api/download/"),
+        RAW("/api/sendFileRaw", "/api/downloadRaw/");
+
+        private final String uploadPath;
+        private final String downloadPath;
+
+        Mode(String uploadPath, String downloadPath) {
+            this.uploadPath = uploadPath;
+            this.downloadPath = downloadPath;
+        }
+
+        public String getUploadPath() {
+            return uploadPath;
+        }
+
+        public String getDownloadPath() {
+            return downloadPath;
+        }
+    }
+
+    private static final String PREFIX = "loadtest.";
+    private static final String APP_PREFIX = "loadtest.app.";
+
+    public static LoadTestConfig fromSystemProperties() {
+        List<Mode> modes = Arrays.stream(property("modes", "chunked,raw").split(","))
+                .map(String::trim)
+                .map(name -> Mode.valueOf(name.toUpperCase()))
+                .toList();
+
+        Map<String, String> appProperties = new TreeMap<>();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(APP_PREFIX))
+                .forEach(name -> appProperties.put(name.substring(APP_PREFIX.length()), System.getProperty(name)));
+
+        LoadTestConfig config = new LoadTestConfig(modes,
+                Integer.parseInt(property("clients", "8")),
+                Integer.parseInt(property("operations", "400")),
+                Integer.parseInt(property("warmup", "40")),
+                Double.parseDouble(property("upload-ratio", "0.2")),
+                (int) DataSize.parse(property("file-size", "4MB")).toBytes(),
+                Integer.parseInt(property("families", "8")),
+                property("dataset", Workload.MUTATED),
+                Long.parseLong(property("seed", "42")),
+                Path.of(property("output", "build/loadtest")),
+                appProperties);
+        config.validate();
+        return config;
+    }
+
+    private void validate() {
+        if (modes.isEmpty() || clients < 1 || operations < 1 || warmupOperations < 0 || families < 1 || fileSize < 1) {
+            throw new IllegalArgumentException("Invalid load test settings: " + this);
+        }
+        if (uploadRatio < 0 || uploadRatio > 1) {
+            throw new IllegalArgumentException("loadtest.upload-ratio must be between 0 and 1, got " + uploadRatio);
+        }
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+}
@@ -0,0 +1,94 @@
+package com.group.javafastfile.loadtest;
+
+import java.util.Random;
+
+/**
+ * Synthetic files for the load test. Files come in families: every version of a family is the
+ * family's base file with a few small edits, so chunked storage sees the overlap real file
+ * histories have. Everything derives from the configured seed, so two runs upload the same bytes.
+ */
+public final class Workload {
+
+    /** Text-like bases, each version a handful of inserts, deletes and overwrites away from its base. */
+    public static final String MUTATED = "mutated";
+    /** Text-like files with nothing shared between versions, only compression helps. */
+    public static final String TEXT = "text";
+    /** Incompressible files with nothing shared, the worst case for both modes. */
+    public static final String RANDOM = "random";
+
+    private static final int EDITS_PER_VERSION = 8;
+
+    private static final String[] WORDS = {
+            "chunk", "file", "store", "fingerprint", "manifest", "pack", "segment", "index", "cache",
+            "the", "of", "and", "to", "in", "is", "for", "with", "on", "that", "by", "as", "at", "from",
+            "2024-05-17T10:15:30Z", "INFO", "WARN", "request", "completed", "duration_ms=", "status=200"
+    };
+
+    private final String dataset;
+    private final int size;
+    private final long seed;
+
+    public Workload(String dataset, int size, long seed) {
+        if (!dataset.equals(MUTATED) && !dataset.equals(TEXT) && !dataset.equals(RANDOM)) {
+            throw new IllegalArgumentException("Unknown dataset: " + dataset);
+        }
+        this.dataset = dataset;
+        this.size = size;
+        this.seed = seed;
+    }
+
+    public static String filename(int family, int version) {
+        return String.format("lt-f%03d-v%05d.dat", family, version);
+    }
+
+    public byte[] generate(int family, int version) {
+        long versionSeed = seed * 31 + family * 1_000_003L + version;
+        return switch (dataset) {
+            case MUTATED -> mutate(text(seed * 31 + family), new Random(versionSeed), version == 0 ? 0 : EDITS_PER_VERSION);
+            case TEXT -> text(versionSeed);
+            default -> random(versionSeed);
+        };
+    }
+
+    private byte[] text(long textSeed) {
+        Random random = new Random(textSeed);
+        byte[] data = new byte[size];
+        int position = 0;
+        while (position < size) {
+            String word = random.nextInt(12) == 0 ? "\n" : WORDS[random.nextInt(WORDS.length)] + ' ';
+            for (int i = 0; i < word.length() && position < size; i++) {
+                data[position++] = (byte) word.charAt(i);
+            }
+        }
+        return data;
+    }
+
+    private byte[] random(long randomSeed) {
+        byte[] data = new byte[size];
+        new Random(randomSeed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] mutate(byte[] data, Random random, int edits) {
+        for (int edit = 0; edit < edits; edit++) {
+            int position = random.nextInt(data.length);
+            int length = 1 + random.nextInt(64);
+            byte[] patch = new byte[length];
+            random.nextBytes(patch);
+            data = switch (random.nextInt(3)) {
+                case 0 -> splice(data, position, 0, patch);
+                case 1 -> splice(data, position, Math.min(length, data.length - position), new byte[0]);
+                default -> splice(data, position, Math.min(length, data.length - position), patch);
+            };
+        }
+        return data;
+    }
+
+    private static byte[] splice(byte[] data, int position, int removed, byte[] inserted) {
+        byte[] result = new byte[data.length - removed + inserted.length];
+        System.arraycopy(data, 0, result, 0, position);
+        System.arraycopy(inserted, 0, result, position, inserted.length);
+        System.arraycopy(data, position + removed, result, position + inserted.length, data.length - position - removed);
+        return result;
+    }
+}
@@ -0,0 +1,134 @@
+package com.group.javafastfile;
+
+import com.group.javafastfile.config.ChunkerConfig;
+import com.group.javafastfile.repositories.FileRepository;
+import com.group.javafastfile.repositories.InMemoryManifestRepository;
+import com.group.javafastfile.services.ChunkCache;
+import com.group.javafastfile.services.ChunkCollector;
+import com.group.javafastfile.services.FileService;
+import com.group.javafastfile.services.StorageMetrics;
+import com.group.javafastfile.storage.CompressionPolicy;
+import com.group.javafastfile.storage.Fingerprinter;
+import com.group.javafastfile.storage.PackStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * The storage side of the application wired without the web layer, on an in-memory H2 database
+ * in PostgreSQL mode and a throwaway storage root. Manifests are kept in memory, since H2 has no
+ * equivalent for the {@code INSERT ... RETURNING} used by {@code ManifestRepository}.
+ */
+public class BenchmarkContext implements AutoCloseable {
+
+    private final Path storageRoot;
+    private final AnnotationConfigApplicationContext context;
+
+    public BenchmarkContext(Map<String, Object> properties) {
+        try {
+            storageRoot = Files.createTempDirectory("fastfile-bench-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, Object> settings = new HashMap<>(properties);
+        settings.put("fastfile.storage.root", storageRoot.toString());
+        settings.put("bench.database", UUID.randomUUID().toString());
+        // The collector reads references from file_chunks, which the in-memory manifests never fill
+        settings.put("fastfile.gc.enabled", "false");
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", settings));
+        // Without Boot's auto-configuration, sizes like "256MB" need Boot's converters registered explicitly
+        context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        context.register(Wiring.class);
+        context.refresh();
+    }
+
+    public FileService fileService() {
+        return context.getBean(FileService.class);
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Bytes written under the storage root, i.e. what the stored data costs on disk.
+     */
+    public long storedBytes() {
+        try (Stream<Path> files = Files.walk(storageRoot)) {
+            return files.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        try (Stream<Path> files = Files.walk(storageRoot)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Configuration
+    @Import({ChunkerConfig.class, CompressionPolicy.class, Fingerprinter.class, PackStore.class, FileRepository.class,
+            InMemoryManifestRepository.class, ChunkCache.class, StorageMetrics.class, ChunkCollector.class,
+            FileService.class})
+    static class Wiring {
+
+        @Bean
+        static PropertySourcesPlaceholderConfigurer placeholderConfigurer() {
+            return new PropertySourcesPlaceholderConfigurer();
+        }
+
+        @Bean
+        DataSource dataSource(Environment environment) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                    "jdbc:h2:mem:" + environment.getProperty("bench.database") + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+            new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+            return dataSource;
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        TransactionTemplate transactionTemplate(DataSource dataSource) {
+            return new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        }
+    }
+}
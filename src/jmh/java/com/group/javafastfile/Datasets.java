@@ -0,0 +1,121 @@
+package com.group.javafastfile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reproducible synthetic inputs for the benchmarks. Every dataset is derived from a fixed seed,
+ * so runs on different machines and commits see exactly the same bytes.
+ */
+public final class Datasets {
+
+    public static final String RANDOM = "random";
+    public static final String TEXT = "text";
+    public static final String MUTATED = "mutated";
+    public static final String COMPRESSED = "compressed";
+
+    private static final long SEED = 0x5eed_f11eL;
+
+    private static final String[] WORDS = {
+            "chunk", "file", "store", "fingerprint", "manifest", "pack", "segment", "index", "cache",
+            "the", "of", "and", "to", "in", "is", "for", "with", "on", "that", "by", "as", "at", "from",
+            "2024-05-17T10:15:30Z", "INFO", "WARN", "request", "completed", "duration_ms=", "status=200"
+    };
+
+    private Datasets() {
+    }
+
+    /**
+     * Returns about {@code size} bytes of the named dataset. {@code version} selects one of several variants:
+     * independent draws for random, text and compressed data, and successive edits of one base file for mutated.
+     */
+    public static byte[] generate(String dataset, int size, int version) {
+        return switch (dataset) {
+            case RANDOM -> random(size, SEED + version);
+            case TEXT -> text(size, SEED + version);
+            case MUTATED -> mutated(size, version);
+            case COMPRESSED -> compressed(size, SEED + version);
+            default -> throw new IllegalArgumentException("Unknown dataset: " + dataset);
+        };
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Log-like lines built from a small vocabulary, compressible roughly like real text and logs.
+     */
+    private static byte[] text(int size, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[size];
+        int position = 0;
+        while (position < size) {
+            String word = random.nextInt(12) == 0 ? "\n" : WORDS[random.nextInt(WORDS.length)] + ' ';
+            for (int i = 0; i < word.length() && position < size; i++) {
+                data[position++] = (byte) word.charAt(i);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * A base text file with {@code version} rounds of small inserts, deletes and overwrites applied,
+     * the kind of history content-defined chunking is meant to deduplicate.
+     */
+    private static byte[] mutated(int size, int version) {
+        byte[] data = text(size, SEED);
+        Random random = new Random(SEED ^ 0x6d757461L);
+        for (int round = 0; round < version; round++) {
+            for (int edit = 0; edit < 8; edit++) {
+                int position = random.nextInt(data.length);
+                int length = 1 + random.nextInt(64);
+                byte[] patch = random(length, random.nextLong());
+                data = switch (random.nextInt(3)) {
+                    case 0 -> splice(data, position, 0, patch);
+                    case 1 -> splice(data, position, Math.min(length, data.length - position), new byte[0]);
+                    default -> splice(data, position, Math.min(length, data.length - position), patch);
+                };
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Gzipped text, standing in for media and archives that do not compress any further.
+     */
+    private static byte[] compressed(int size, long seed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        long part = 0;
+        try {
+            while (out.size() < size) {
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                    @Override
+                    public void close() throws IOException {
+                        finish();
+                    }
+                }) {
+                    gzip.write(text(size, seed + part++));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] data = new byte[size];
+        System.arraycopy(out.toByteArray(), 0, data, 0, size);
+        return data;
+    }
+
+    private static byte[] splice(byte[] data, int position, int removed, byte[] inserted) {
+        byte[] result = new byte[data.length - removed + inserted.length];
+        System.arraycopy(data, 0, result, 0, position);
+        System.arraycopy(inserted, 0, result, position, inserted.length);
+        System.arraycopy(data, position + removed, result, position + inserted.length, data.length - position - removed);
+        return result;
+    }
+}
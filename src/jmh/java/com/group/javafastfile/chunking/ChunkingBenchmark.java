@@ -0,0 +1,61 @@
+package com.group.javafastfile.chunking;
+
+import com.group.javafastfile.Datasets;
+import org.openjdk.jmh.annotations.*;
+import org.rabinfingerprint.polynomial.Polynomial;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boundary detection alone, over 16MB of each dataset. {@code bytes} is reported per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChunkingBenchmark {
+
+    private static final int DATA_SIZE = 16 * 1024 * 1024;
+
+    @Param({"rabin", "fastcdc"})
+    public String engine;
+
+    @Param({Datasets.RANDOM, Datasets.TEXT, Datasets.COMPRESSED})
+    public String dataset;
+
+    private Chunker chunker;
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        chunker = switch (engine) {
+            case "rabin" -> new RabinChunker(Polynomial.createFromLong(0x3026bf10e7c1e3L), 2048, 8192);
+            case "fastcdc" -> new FastCdcChunker(2048, 8192, 65536, 2);
+            default -> throw new IllegalArgumentException(engine);
+        };
+        data = Datasets.generate(dataset, DATA_SIZE, 0);
+    }
+
+    @Benchmark
+    public int chunk(ByteCounter counter) throws IOException {
+        ChunkReader reader = chunker.open(new ByteArrayInputStream(data));
+        int chunks = 0;
+        while (reader.next() != null) {
+            chunks++;
+        }
+        counter.bytes += data.length;
+        return chunks;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ByteCounter {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+}
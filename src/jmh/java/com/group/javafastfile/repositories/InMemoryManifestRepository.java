@@ -0,0 +1,94 @@
+package com.group.javafastfile.repositories;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manifest storage for benchmarks, kept entirely in memory. It stands in for the Postgres
+ * {@code INSERT ... RETURNING}, which H2 does not support, and keeps manifest writes out of the
+ * numbers being measured. Versions are numbered but only the latest one is kept, so repeated
+ * uploads of the same name do not grow the heap.
+ */
+public class InMemoryManifestRepository extends ManifestRepository {
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<String, FileManifest> manifests = new ConcurrentHashMap<>();
+    private final Map<Long, List<ManifestEntry>> entries = new ConcurrentHashMap<>();
+    private final FileCatalog catalog = new FileCatalog();
+
+    @Override
+    void loadManifests() {
+    }
+
+    @Override
+    public FileManifest saveManifest(String filename, String chunker, long originalSize, long storedSize,
+                                     List<ManifestEntry> fileEntries) {
+        long id = ids.incrementAndGet();
+        entries.put(id, List.copyOf(fileEntries));
+        FileManifest previous = manifests.get(filename);
+        FileManifest manifest = new FileManifest(id, filename, previous == null ? 1 : previous.version() + 1, chunker,
+                originalSize, storedSize, fileEntries.size(), Instant.now());
+        manifests.put(filename, manifest);
+        if (previous != null) {
+            entries.remove(previous.id());
+        }
+        catalog.put(FileInfo.of(manifest));
+        return manifest;
+    }
+
+    @Override
+    public boolean deleteManifest(String filename) {
+        FileManifest manifest = manifests.remove(filename);
+        if (manifest == null) {
+            return false;
+        }
+        entries.remove(manifest.id());
+        catalog.remove(filename);
+        return true;
+    }
+
+    @Override
+    public FileManifest findManifest(String filename) {
+        return manifests.get(filename);
+    }
+
+    @Override
+    public FileManifest findManifest(String filename, int version) {
+        FileManifest manifest = manifests.get(filename);
+        return manifest != null && manifest.version() == version ? manifest : null;
+    }
+
+    @Override
+    public List<FileManifest> findVersions(String filename) {
+        FileManifest manifest = manifests.get(filename);
+        return manifest == null ? List.of() : List.of(manifest);
+    }
+
+    @Override
+    public List<ManifestEntry> findEntries(FileManifest manifest, long start, long end) {
+        List<ManifestEntry> overlapping = new ArrayList<>();
+        List<ManifestEntry> fileEntries = entries.get(manifest.id());
+        for (int i = 0; i < fileEntries.size(); i++) {
+            long chunkEnd = i + 1 < fileEntries.size() ? fileEntries.get(i + 1).offset() : manifest.originalSize();
+            ManifestEntry entry = fileEntries.get(i);
+            if (chunkEnd > start && entry.offset() < end) {
+                overlapping.add(entry);
+            }
+        }
+        return overlapping;
+    }
+
+    @Override
+    public List<String> listFilenames() {
+        return new ArrayList<>(manifests.keySet());
+    }
+
+    @Override
+    public FileCatalog.Page listFiles(String prefix, FileCatalog.Sort sort, boolean descending, String cursor, int limit) {
+        return catalog.list(prefix, sort, descending, cursor, limit);
+    }
+}
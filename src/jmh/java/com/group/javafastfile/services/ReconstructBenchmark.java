@@ -0,0 +1,76 @@
+package com.group.javafastfile.services;
+
+import com.group.javafastfile.BenchmarkContext;
+import com.group.javafastfile.Datasets;
+import com.group.javafastfile.repositories.FileManifest;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end downloads of a stored file: reassembly from chunks against decoding a raw block frame,
+ * for the whole file and for a 1MB range in the middle. A read-ahead of 1 decodes chunks one after
+ * another on the calling thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReconstructBenchmark {
+
+    private static final int FILE_SIZE = 32 * 1024 * 1024;
+    private static final int RANGE_SIZE = 1024 * 1024;
+    private static final String FILENAME = "reconstruct.bin";
+
+    @Param({Datasets.TEXT, Datasets.RANDOM})
+    public String dataset;
+
+    @Param({"0", "256MB"})
+    public String cacheSize;
+
+    @Param({"1", "16"})
+    public String readAhead;
+
+    private BenchmarkContext context;
+    private FileService fileService;
+    private FileManifest manifest;
+
+    @Setup(Level.Trial)
+    public void store() {
+        context = new BenchmarkContext(Map.of("fastfile.chunker.type", "fastcdc", "fastfile.cache.max-size", cacheSize,
+                "fastfile.download.read-ahead", readAhead));
+        fileService = context.fileService();
+        MockMultipartFile file = new MockMultipartFile("file", FILENAME, null, Datasets.generate(dataset, FILE_SIZE, 0));
+        fileService.storeFile(file);
+        fileService.storeFileRaw(file);
+        manifest = fileService.getManifest(FILENAME);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public void loadFile() throws IOException {
+        fileService.writeFile(manifest, 0, manifest.originalSize(), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void loadRawFile() throws IOException {
+        fileService.writeRawFile(FILENAME, 0, FILE_SIZE, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void loadFileRange() throws IOException {
+        fileService.writeFile(manifest, FILE_SIZE / 2, RANGE_SIZE, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void loadRawFileRange() throws IOException {
+        fileService.writeRawFile(FILENAME, FILE_SIZE / 2, RANGE_SIZE, OutputStream.nullOutputStream());
+    }
+}
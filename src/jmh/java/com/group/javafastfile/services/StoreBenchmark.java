@@ -0,0 +1,89 @@
+package com.group.javafastfile.services;
+
+import com.group.javafastfile.BenchmarkContext;
+import com.group.javafastfile.Datasets;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end uploads through {@link FileService}: chunked with deduplication against plain block compression.
+ * Each iteration starts from empty storage and uploads successive versions of the dataset, so
+ * {@code logicalBytes / storedBytes} is the dedup (and compression) ratio of that history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = 8)
+@Measurement(iterations = 5, batchSize = 8)
+public class StoreBenchmark {
+
+    private static final int FILE_SIZE = 32 * 1024 * 1024;
+    private static final int VERSIONS = 8;
+
+    @Param({Datasets.MUTATED, Datasets.TEXT, Datasets.RANDOM, Datasets.COMPRESSED})
+    public String dataset;
+
+    @Param({"fastcdc", "rabin"})
+    public String chunker;
+
+    private MockMultipartFile[] versions;
+    private BenchmarkContext context;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        versions = new MockMultipartFile[VERSIONS];
+        for (int version = 0; version < VERSIONS; version++) {
+            versions[version] = new MockMultipartFile("file", dataset + "-v" + version, null,
+                    Datasets.generate(dataset, FILE_SIZE, version));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void open() {
+        context = new BenchmarkContext(Map.of("fastfile.chunker.type", chunker, "fastfile.cache.max-size", "0"));
+        next = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public String storeFile(StorageCounters counters) {
+        MockMultipartFile file = versions[next++ % VERSIONS];
+        String result = context.fileService().storeFile(file);
+        counters.record(file.getSize(), context.storedBytes());
+        return result;
+    }
+
+    @Benchmark
+    public String storeFileRaw(StorageCounters counters) {
+        MockMultipartFile file = versions[next++ % VERSIONS];
+        String result = context.fileService().storeFileRaw(file);
+        counters.record(file.getSize(), context.storedBytes());
+        return result;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StorageCounters {
+        public long logicalBytes;
+        public long storedBytes;
+
+        void record(long uploaded, long stored) {
+            logicalBytes += uploaded;
+            storedBytes = stored;
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            logicalBytes = 0;
+            storedBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.group.javafastfile.storage;
+
+import com.group.javafastfile.Datasets;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of one 64KB chunk with each codec, and the adaptive policy including its probe.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompressionBenchmark {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Param({"LZ4_FAST", "LZ4_HC"})
+    public Codec codec;
+
+    @Param({Datasets.RANDOM, Datasets.TEXT, Datasets.COMPRESSED})
+    public String dataset;
+
+    private final CompressionPolicy adaptive = new CompressionPolicy();
+    private byte[] chunk;
+    private byte[] encoded;
+    private int encodedLength;
+    private byte[] scratch;
+    private byte[] decoded;
+
+    @Setup
+    public void setUp() {
+        ReflectionTestUtils.setField(adaptive, "policy", "adaptive");
+        ReflectionTestUtils.setField(adaptive, "rawEntropy", 7.5);
+        ReflectionTestUtils.setField(adaptive, "hcEntropy", 5.0);
+
+        chunk = Datasets.generate(dataset, CHUNK_SIZE, 0);
+        encoded = new byte[Codec.maxEncodedLength(CHUNK_SIZE)];
+        encodedLength = codec.encode(chunk, 0, CHUNK_SIZE, encoded, 0);
+        decoded = new byte[CHUNK_SIZE];
+        scratch = new byte[encoded.length];
+    }
+
+    @Benchmark
+    public int encode() {
+        return codec.encode(chunk, 0, CHUNK_SIZE, scratch, 0);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        codec.decode(encoded, 0, decoded, 0, CHUNK_SIZE);
+        return decoded;
+    }
+
+    @Benchmark
+    public CompressionPolicy.Encoded encodeAdaptive() {
+        return adaptive.encode(chunk, 0, CHUNK_SIZE, scratch, 0);
+    }
+
+    @TearDown
+    public void report() {
+        System.out.printf("%n%s on %s: ratio %.3f%n", codec, dataset, (double) encodedLength / CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,61 @@
+package com.group.javafastfile.storage;
+
+import com.group.javafastfile.Datasets;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chunk fingerprinting as done on the ingest workers: single chunks for typical sizes,
+ * and batches of 64 chunks with and without the xxHash64 pre-hash.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FingerprintBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"2048", "8192", "65536"})
+    public int chunkSize;
+
+    @Param({"none", "xxh64"})
+    public String prehash;
+
+    /** Share of the batch made of repeats of earlier chunks, as in sparse or zero-filled files */
+    @Param({"0", "50"})
+    public int repeatPercent;
+
+    private Fingerprinter fingerprinter;
+    private byte[] chunk;
+    private List<byte[]> batch;
+
+    @Setup
+    public void setUp() {
+        fingerprinter = new Fingerprinter(prehash);
+        chunk = Datasets.generate(Datasets.RANDOM, chunkSize, 0);
+
+        Random random = new Random(chunkSize);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (i > 0 && random.nextInt(100) < repeatPercent) {
+                batch.add(batch.get(random.nextInt(i)).clone());
+            } else {
+                batch.add(Datasets.generate(Datasets.RANDOM, chunkSize, i + 1));
+            }
+        }
+    }
+
+    @Benchmark
+    public String fingerprint() {
+        return fingerprinter.fingerprint(chunk);
+    }
+
+    @Benchmark
+    public List<byte[]> fingerprintBatch() {
+        return fingerprinter.digestAll(batch);
+    }
+}
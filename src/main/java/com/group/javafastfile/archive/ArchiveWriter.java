@@ -0,0 +1,39 @@
+package com.group.javafastfile.archive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+
+/**
+ * Writes an archive entry by entry straight into an output stream. Entry data is written
+ * through {@link #entryStream()} between {@link #beginEntry} and {@link #closeEntry}.
+ */
+public interface ArchiveWriter {
+
+    void beginEntry(String name, long size, Instant modified) throws IOException;
+
+    OutputStream entryStream();
+
+    void closeEntry() throws IOException;
+
+    /**
+     * Write the end of the archive. The underlying stream is flushed but left open.
+     */
+    void finish() throws IOException;
+
+    static ArchiveWriter open(String format, OutputStream out, int zipLevel) {
+        return switch (format) {
+            case "zip" -> new ZipArchiveWriter(out, zipLevel);
+            case "tar" -> new TarArchiveWriter(out);
+            default -> throw new IllegalArgumentException("Unknown archive format: " + format);
+        };
+    }
+
+    static String contentType(String format) {
+        return switch (format) {
+            case "zip" -> "application/zip";
+            case "tar" -> "application/x-tar";
+            default -> throw new IllegalArgumentException("Unknown archive format: " + format);
+        };
+    }
+}
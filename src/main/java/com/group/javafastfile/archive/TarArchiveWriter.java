@@ -0,0 +1,148 @@
+package com.group.javafastfile.archive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * POSIX (pax) tar archives. Entries are plain ustar headers; names longer than 100 bytes or not
+ * ASCII, and sizes of 8GB or more, are carried in a pax extended header before the entry.
+ */
+public class TarArchiveWriter implements ArchiveWriter {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    private final OutputStream out;
+    private final EntryStream entryStream = new EntryStream();
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    private String entryName;
+    private long entrySize;
+    private long entryWritten;
+
+    public TarArchiveWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void beginEntry(String name, long size, Instant modified) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean longName = nameBytes.length > 100 || nameBytes.length != name.length();
+        if (longName || size > MAX_OCTAL_SIZE) {
+            StringBuilder records = new StringBuilder();
+            if (longName) {
+                records.append(paxRecord("path", name));
+            }
+            if (size > MAX_OCTAL_SIZE) {
+                records.append(paxRecord("size", Long.toString(size)));
+            }
+            byte[] data = records.toString().getBytes(StandardCharsets.UTF_8);
+            writeHeader(asciiName("PaxHeaders/" + name), data.length, modified, (byte) 'x');
+            out.write(data);
+            pad(data.length);
+        }
+        writeHeader(longName ? asciiName(name) : nameBytes, Math.min(size, MAX_OCTAL_SIZE), modified, (byte) '0');
+
+        entryName = name;
+        entrySize = size;
+        entryWritten = 0;
+    }
+
+    @Override
+    public OutputStream entryStream() {
+        return entryStream;
+    }
+
+    @Override
+    public void closeEntry() throws IOException {
+        if (entryWritten != entrySize) {
+            throw new IOException("Wrote " + entryWritten + " bytes for " + entryName + ", expected " + entrySize);
+        }
+        pad(entrySize);
+        entryName = null;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        Arrays.fill(header, (byte) 0);
+        out.write(header);
+        out.write(header);
+        out.flush();
+    }
+
+    private void writeHeader(byte[] name, long size, Instant modified, byte type) throws IOException {
+        Arrays.fill(header, (byte) 0);
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, 100));
+        octal(0644, 100, 8);
+        octal(0, 108, 8);
+        octal(0, 116, 8);
+        octal(size, 124, 12);
+        octal(Math.max(0, modified.getEpochSecond()), 136, 12);
+        header[156] = type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+        // The checksum is computed with its own field set to spaces
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(checksum, 148, 7);
+        out.write(header);
+    }
+
+    private void octal(long value, int offset, int length) {
+        String digits = Long.toOctalString(value);
+        int width = length - 1;
+        for (int i = 0; i < width; i++) {
+            int digit = digits.length() - width + i;
+            header[offset + i] = (byte) (digit < 0 ? '0' : digits.charAt(digit));
+        }
+        header[offset + width] = 0;
+    }
+
+    private void pad(long written) throws IOException {
+        int remainder = (int) (written % BLOCK_SIZE);
+        if (remainder != 0) {
+            out.write(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+
+    /**
+     * Fallback ustar name for readers without pax support: ASCII only, cut to fit.
+     */
+    private static byte[] asciiName(String name) {
+        byte[] ascii = name.replaceAll("[^\\x20-\\x7e]", "_").getBytes(StandardCharsets.US_ASCII);
+        return Arrays.copyOf(ascii, Math.min(ascii.length, 100));
+    }
+
+    /**
+     * A pax record is "length key=value\n", where length counts the whole record including itself.
+     */
+    private static String paxRecord(String key, String value) {
+        int length = key.length() + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int total = length + Integer.toString(length).length();
+        if (Integer.toString(total).length() > Integer.toString(length).length()) {
+            total++;
+        }
+        return total + " " + key + "=" + value + "\n";
+    }
+
+    private final class EntryStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            entryWritten++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            entryWritten += len;
+        }
+    }
+}
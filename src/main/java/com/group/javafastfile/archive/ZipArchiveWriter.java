@@ -0,0 +1,57 @@
+package com.group.javafastfile.archive;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZIP archives written in one pass. Sizes and CRCs follow each entry in a data descriptor,
+ * and entries or archives past 4GB switch to ZIP64 on their own.
+ */
+public class ZipArchiveWriter implements ArchiveWriter {
+
+    private final ZipOutputStream zip;
+
+    public ZipArchiveWriter(OutputStream out, int level) {
+        // Closing the archive must not close the response stream under it
+        zip = new ZipOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        });
+        zip.setLevel(level);
+    }
+
+    @Override
+    public void beginEntry(String name, long size, Instant modified) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setLastModifiedTime(FileTime.from(modified));
+        zip.putNextEntry(entry);
+    }
+
+    @Override
+    public OutputStream entryStream() {
+        return zip;
+    }
+
+    @Override
+    public void closeEntry() throws IOException {
+        zip.closeEntry();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        zip.finish();
+        zip.flush();
+    }
+}
@@ -0,0 +1,94 @@
+package com.group.javafastfile.chunking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads chunks from a stream through a fixed-size sliding buffer, so memory use does
+ * not depend on the stream length. Subclasses only decide where chunks end.
+ */
+public abstract class ChunkReader {
+
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int chunkStart;
+    private int position;
+    private int limit;
+    private long bytesRead;
+    private boolean eof;
+
+    protected ChunkReader(InputStream in, int maxChunkSize) {
+        this.in = in;
+        this.buffer = new byte[Math.max(MIN_BUFFER_SIZE, 2 * (maxChunkSize + 1))];
+    }
+
+    /**
+     * Returns the next chunk, or {@code null} once the stream is exhausted.
+     */
+    public byte[] next() throws IOException {
+        while (true) {
+            if (position < limit) {
+                int boundary = findBoundary(buffer, chunkStart, position, limit);
+                if (boundary >= 0) {
+                    position = boundary;
+                    return cut();
+                }
+                position = limit;
+            }
+            if (!fill()) {
+                return chunkStart < limit ? cut() : null;
+            }
+        }
+    }
+
+    /**
+     * Total number of bytes consumed from the underlying stream so far.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Scans {@code buffer[from, to)} for the end of the chunk starting at {@code chunkStart}.
+     * Bytes before {@code from} have already been scanned by a previous call.
+     *
+     * @return the exclusive end index of the chunk, or -1 if more data is needed
+     */
+    protected abstract int findBoundary(byte[] buffer, int chunkStart, int from, int to);
+
+    /**
+     * Clears any rolling state once a chunk has been cut.
+     */
+    protected abstract void resetState();
+
+    private byte[] cut() {
+        byte[] chunk = Arrays.copyOfRange(buffer, chunkStart, position);
+        chunkStart = position;
+        resetState();
+        return chunk;
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        // Slide the pending partial chunk to the front so the tail of the buffer is free again
+        if (chunkStart > 0) {
+            System.arraycopy(buffer, chunkStart, buffer, 0, limit - chunkStart);
+            position -= chunkStart;
+            limit -= chunkStart;
+            chunkStart = 0;
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        bytesRead += read;
+        return true;
+    }
+}
@@ -0,0 +1,22 @@
+package com.group.javafastfile.chunking;
+
+import java.io.InputStream;
+
+/**
+ * Content-defined chunking engine. Implementations must be deterministic: the same
+ * bytes always produce the same boundaries, otherwise deduplication breaks.
+ */
+public interface Chunker {
+
+    /**
+     * Name and parameters of this engine, recorded with every file it chunks.
+     */
+    String getName();
+
+    /**
+     * Largest chunk this engine can emit.
+     */
+    int getMaxChunkSize();
+
+    ChunkReader open(InputStream in);
+}
@@ -0,0 +1,54 @@
+package com.group.javafastfile.chunking;
+
+import org.rabinfingerprint.polynomial.Polynomial;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rebuilds a chunker from the name returned by {@link Chunker#getName()}, as published by
+ * {@code GET /api/chunker}, so clients cut files exactly like the server.
+ */
+public final class Chunkers {
+
+    private static final Pattern NAME = Pattern.compile("(\\w+)\\(([^)]*)\\)");
+
+    private Chunkers() {
+    }
+
+    public static Chunker fromName(String name) {
+        Matcher matcher = NAME.matcher(name);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a chunker name: " + name);
+        }
+        Map<String, String> params = new HashMap<>();
+        for (String param : matcher.group(2).split(",")) {
+            String[] keyValue = param.split("=", 2);
+            if (keyValue.length == 2) {
+                params.put(keyValue[0], keyValue[1]);
+            }
+        }
+
+        return switch (matcher.group(1)) {
+            case "fastcdc" -> new FastCdcChunker(intParam(params, "min"), intParam(params, "avg"),
+                    intParam(params, "max"), intParam(params, "level"));
+            case "rabin" -> new RabinChunker(Polynomial.createFromLong(Long.parseLong(param(params, "poly"), 16)),
+                    intParam(params, "modulus"), intParam(params, "max"));
+            default -> throw new IllegalArgumentException("Unknown chunker: " + name);
+        };
+    }
+
+    private static int intParam(Map<String, String> params, String key) {
+        return Integer.parseInt(param(params, key));
+    }
+
+    private static String param(Map<String, String> params, String key) {
+        String value = params.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing chunker parameter: " + key);
+        }
+        return value;
+    }
+}
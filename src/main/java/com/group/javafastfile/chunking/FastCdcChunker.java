@@ -0,0 +1,101 @@
+package com.group.javafastfile.chunking;
+
+import java.io.InputStream;
+
+/**
+ * FastCDC chunker: a Gear rolling hash with cut-point skipping below the minimum size
+ * and normalized chunking, i.e. a stricter mask before the average size and a looser
+ * one after it, which keeps chunk sizes close to the average.
+ */
+public class FastCdcChunker implements Chunker {
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // SplitMix64 from a fixed seed. The table must never change, or boundaries of
+        // stored files would no longer match those of new uploads.
+        long seed = 0x6a09e667f3bcc908L;
+        for (int i = 0; i < GEAR.length; i++) {
+            seed += 0x9e3779b97f4a7c15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private final int minSize;
+    private final int avgSize;
+    private final int maxSize;
+    private final int normalizationLevel;
+    private final long maskSmall;
+    private final long maskLarge;
+
+    public FastCdcChunker(int minSize, int avgSize, int maxSize, int normalizationLevel) {
+        if (minSize <= 0 || minSize >= avgSize || avgSize >= maxSize) {
+            throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min < avg < max");
+        }
+        int bits = 31 - Integer.numberOfLeadingZeros(avgSize);
+        if (normalizationLevel < 0 || normalizationLevel >= bits) {
+            throw new IllegalArgumentException("Invalid normalization level: " + normalizationLevel);
+        }
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.maxSize = maxSize;
+        this.normalizationLevel = normalizationLevel;
+        // Masks use the high bits, which depend on the last 64 bytes rather than the last few
+        this.maskSmall = -1L << (64 - (bits + normalizationLevel));
+        this.maskLarge = -1L << (64 - (bits - normalizationLevel));
+    }
+
+    @Override
+    public String getName() {
+        return "fastcdc(min=" + minSize + ",avg=" + avgSize + ",max=" + maxSize
+                + ",level=" + normalizationLevel + ")";
+    }
+
+    @Override
+    public int getMaxChunkSize() {
+        return maxSize;
+    }
+
+    @Override
+    public ChunkReader open(InputStream in) {
+        return new ChunkReader(in, maxSize) {
+            private long hash;
+
+            @Override
+            protected int findBoundary(byte[] buffer, int chunkStart, int from, int to) {
+                int maxEnd = chunkStart + maxSize;
+                int end = Math.min(to, maxEnd);
+                int normalEnd = Math.min(end, chunkStart + avgSize);
+                int i = Math.max(from, chunkStart + minSize);
+                long h = hash;
+
+                for (; i < normalEnd; i++) {
+                    h = (h << 1) + GEAR[buffer[i] & 0xff];
+                    if ((h & maskSmall) == 0) {
+                        return i + 1;
+                    }
+                }
+                for (; i < end; i++) {
+                    h = (h << 1) + GEAR[buffer[i] & 0xff];
+                    if ((h & maskLarge) == 0) {
+                        return i + 1;
+                    }
+                }
+                if (end == maxEnd) {
+                    return maxEnd;
+                }
+
+                hash = h;
+                return -1;
+            }
+
+            @Override
+            protected void resetState() {
+                hash = 0;
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package com.group.javafastfile.chunking;
+
+import org.rabinfingerprint.fingerprint.RabinFingerprintLong;
+import org.rabinfingerprint.polynomial.Polynomial;
+
+import java.io.InputStream;
+
+/**
+ * The original chunker: cuts wherever the Rabin fingerprint of the current chunk is a
+ * multiple of the boundary modulus, or once the chunk exceeds the maximum size.
+ */
+public class RabinChunker implements Chunker {
+
+    private final Polynomial polynomial;
+    private final int boundaryModulus;
+    private final int maxChunkSize;
+
+    public RabinChunker(Polynomial polynomial, int boundaryModulus, int maxChunkSize) {
+        this.polynomial = polynomial;
+        this.boundaryModulus = boundaryModulus;
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    @Override
+    public String getName() {
+        return "rabin(poly=" + polynomial.toHexString().toLowerCase()
+                + ",modulus=" + boundaryModulus + ",max=" + maxChunkSize + ")";
+    }
+
+    @Override
+    public int getMaxChunkSize() {
+        // A chunk is cut once it grows past the maximum, so it can hold one extra byte
+        return maxChunkSize + 1;
+    }
+
+    @Override
+    public ChunkReader open(InputStream in) {
+        RabinFingerprintLong rabin = new RabinFingerprintLong(polynomial);
+        return new ChunkReader(in, getMaxChunkSize()) {
+            @Override
+            protected int findBoundary(byte[] buffer, int chunkStart, int from, int to) {
+                for (int i = from; i < to; i++) {
+                    rabin.pushByte(buffer[i]);
+                    if (rabin.getFingerprintLong() % boundaryModulus == 0 || i + 1 - chunkStart > maxChunkSize) {
+                        return i + 1;
+                    }
+                }
+                return -1;
+            }
+
+            @Override
+            protected void resetState() {
+                rabin.reset();
+            }
+        };
+    }
+}
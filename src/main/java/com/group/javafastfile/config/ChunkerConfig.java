@@ -0,0 +1,44 @@
+package com.group.javafastfile.config;
+
+import com.group.javafastfile.chunking.Chunker;
+import com.group.javafastfile.chunking.FastCdcChunker;
+import com.group.javafastfile.chunking.RabinChunker;
+import org.rabinfingerprint.polynomial.Polynomial;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ChunkerConfig {
+
+    private static final int RABIN_BOUNDARY_MODULUS = 2048;
+    private static final int RABIN_MAX_CHUNK_SIZE = 8192;
+
+    @Value("${fastfile.chunker.type:fastcdc}")
+    private String type;
+
+    @Value("${fastfile.chunker.min-size:2048}")
+    private int minSize;
+
+    @Value("${fastfile.chunker.avg-size:8192}")
+    private int avgSize;
+
+    @Value("${fastfile.chunker.max-size:65536}")
+    private int maxSize;
+
+    @Value("${fastfile.chunker.normalization-level:2}")
+    private int normalizationLevel;
+
+    @Value("${fastfile.chunker.rabin-polynomial:3026bf10e7c1e3}")
+    private String rabinPolynomial;
+
+    @Bean
+    public Chunker chunker() {
+        return switch (type) {
+            case "rabin" -> new RabinChunker(Polynomial.createFromLong(Long.parseLong(rabinPolynomial, 16)),
+                    RABIN_BOUNDARY_MODULUS, RABIN_MAX_CHUNK_SIZE);
+            case "fastcdc" -> new FastCdcChunker(minSize, avgSize, maxSize, normalizationLevel);
+            default -> throw new IllegalArgumentException("Unknown chunker type: " + type);
+        };
+    }
+}
@@ -1,57 +1,212 @@
 package com.group.javafastfile.controllers;
 
+import com.group.javafastfile.archive.ArchiveWriter;
+import com.group.javafastfile.repositories.FileCatalog;
+import com.group.javafastfile.repositories.FileManifest;
+import com.group.javafastfile.services.ChunkDelta;
 import com.group.javafastfile.services.FileService;
+import com.group.javafastfile.services.IngestJobService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api")
 public class FileController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private IngestJobService ingestJobService;
+
+    @Value("${fastfile.archive.zip-level:1}")
+    private int zipLevel;
+
     @PostMapping("/sendFile")
     public String handleFileUpload(@RequestParam("file") MultipartFile file) {
         return fileService.storeFile(file);
     }
 
+    /**
+     * Queues a chunked upload and answers 202 with the job to poll, or 503 when the queue is full.
+     */
+    @PostMapping("/sendFileAsync")
+    public ResponseEntity<IngestJobService.JobStatus> handleAsyncFileUpload(@RequestParam("file") MultipartFile file) throws IOException {
+        IngestJobService.JobStatus job = ingestJobService.submit(file);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/jobs/" + job.jobId()))
+                .body(job);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public IngestJobService.JobStatus jobStatus(@PathVariable String jobId) {
+        return ingestJobService.getStatus(jobId);
+    }
+
     @PostMapping("/sendFileRaw")
     public String handleRawFileUpload(@RequestParam("file") MultipartFile file) {
         return fileService.storeFileRaw(file);
     }
 
-
+    /**
+     * Streams a chunked file, the latest version unless one is given. A single byte range is
+     * answered with 206 and only the chunks it covers; multi-range requests fall back to the full file.
+     */
     @GetMapping("/download/{filename}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String filename) {
-        Resource file = fileService.loadFile(filename);
+    public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable String filename,
+                                                              @RequestParam(value = "version", required = false) Integer version,
+                                                              @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader) {
+        FileManifest manifest = fileService.getManifest(filename, version);
+        return rangeResponse(filename, manifest.originalSize(), rangeHeader,
+                (start, length, out) -> fileService.writeFile(manifest, start, length, out));
+    }
+
+    @DeleteMapping("/delete/{filename}")
+    public String deleteFile(@PathVariable String filename) {
+        return fileService.deleteFile(filename);
+    }
+
+    @DeleteMapping("/deleteRaw/{filename}")
+    public String deleteRawFile(@PathVariable String filename) {
+        return fileService.deleteFileRaw(filename);
+    }
+
+    /**
+     * Streams several chunked files as one ZIP or TAR archive, given by name and/or by prefix.
+     */
+    @GetMapping("/downloadArchive")
+    public ResponseEntity<StreamingResponseBody> downloadArchive(@RequestParam(value = "files", required = false) List<String> files,
+                                                                 @RequestParam(value = "prefix", required = false) String prefix,
+                                                                 @RequestParam(value = "format", defaultValue = "zip") String format) {
+        String contentType = ArchiveWriter.contentType(format);
+        List<FileManifest> manifests = fileService.resolveArchiveFiles(files, prefix);
+        StreamingResponseBody body = out -> fileService.writeArchive(manifests, ArchiveWriter.open(format, out, zipLevel));
         return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .body(file);
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"files." + format + "\"")
+                .contentType(MediaType.parseMediaType(contentType))
+                .body(body);
+    }
+
+    /**
+     * Every stored version of a chunked file, oldest first.
+     */
+    @GetMapping("/versions/{filename}")
+    public List<FileManifest> listVersions(@PathVariable String filename) {
+        return fileService.listVersions(filename);
+    }
+
+    /**
+     * What a client holding version {@code from} must copy and fetch to build version {@code to}, the latest by default.
+     */
+    @GetMapping("/diff/{filename}")
+    public ChunkDelta diff(@PathVariable String filename,
+                           @RequestParam("from") int fromVersion,
+                           @RequestParam(value = "to", required = false) Integer toVersion) {
+        return fileService.diff(filename, fromVersion, toVersion);
+    }
+
+    @GetMapping("/chunks/{fingerprint}")
+    public ResponseEntity<byte[]> downloadChunk(@PathVariable String fingerprint) throws IOException {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                // Chunks are content-addressed, so their content never changes
+                .header(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable")
+                .body(fileService.getChunk(fingerprint));
     }
 
+    /**
+     * One page of chunked files with their sizes, optionally filtered by prefix and sorted by
+     * {@code name}, {@code size} or {@code date}. Pass back {@code nextCursor} to get the next page.
+     */
     @GetMapping("/listFiles")
-    public List<String> listFiles() {
-        return fileService.listFiles();
+    public FileCatalog.Page listFiles(@RequestParam(value = "prefix", required = false) String prefix,
+                                      @RequestParam(value = "sort", defaultValue = "name") String sort,
+                                      @RequestParam(value = "order", defaultValue = "asc") String order,
+                                      @RequestParam(value = "cursor", required = false) String cursor,
+                                      @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        try {
+            return fileService.listFiles(prefix, FileCatalog.Sort.fromName(sort), "desc".equals(order), cursor,
+                    Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @GetMapping("/listFilesRaw")
-    public List<String> listFilesRaw() {
-        return fileService.listFilesRaw();
+    public FileCatalog.Page listFilesRaw(@RequestParam(value = "prefix", required = false) String prefix,
+                                         @RequestParam(value = "sort", defaultValue = "name") String sort,
+                                         @RequestParam(value = "order", defaultValue = "asc") String order,
+                                         @RequestParam(value = "cursor", required = false) String cursor,
+                                         @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        try {
+            return fileService.listFilesRaw(prefix, FileCatalog.Sort.fromName(sort), "desc".equals(order), cursor,
+                    Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @GetMapping("/downloadRaw/{filename}")
-    public ResponseEntity<Resource> downloadRawFile(@PathVariable String filename) {
-        Resource file = fileService.loadRawFile(filename);
-        return ResponseEntity.ok()
+    public ResponseEntity<StreamingResponseBody> downloadRawFile(@PathVariable String filename,
+                                                                 @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader) {
+        long size = fileService.getRawFileSize(filename);
+        return rangeResponse(filename, size, rangeHeader,
+                (start, length, out) -> fileService.writeRawFile(filename, start, length, out));
+    }
+
+    private ResponseEntity<StreamingResponseBody> rangeResponse(String filename, long size, String rangeHeader, RangeWriter writer) {
+        long start = 0;
+        long length = size;
+        boolean partial = false;
+        if (rangeHeader != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(size);
+                    length = ranges.get(0).getRangeEnd(size) - start + 1;
+                    partial = true;
+                }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .body(file);
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentType(MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM));
+        if (partial) {
+            response.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (start + length - 1) + "/" + size);
+        }
+
+        long rangeStart = start;
+        long rangeLength = length;
+        StreamingResponseBody body = out -> writer.write(rangeStart, rangeLength, out);
+        return response.contentLength(length).body(body);
+    }
+
+    @FunctionalInterface
+    private interface RangeWriter {
+        void write(long start, long length, OutputStream out) throws IOException;
     }
 
 }
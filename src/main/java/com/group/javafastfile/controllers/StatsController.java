@@ -0,0 +1,29 @@
+package com.group.javafastfile.controllers;
+
+import com.group.javafastfile.services.ChunkCache;
+import com.group.javafastfile.services.ChunkCollector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    @Autowired
+    private ChunkCache chunkCache;
+
+    @Autowired
+    private ChunkCollector chunkCollector;
+
+    @GetMapping("/cache")
+    public ChunkCache.Stats cacheStats() {
+        return chunkCache.getStats();
+    }
+
+    @GetMapping("/gc")
+    public ChunkCollector.Stats gcStats() {
+        return chunkCollector.getStats();
+    }
+}
@@ -0,0 +1,70 @@
+package com.group.javafastfile.controllers;
+
+import com.group.javafastfile.chunking.Chunker;
+import com.group.javafastfile.repositories.FileManifest;
+import com.group.javafastfile.services.UploadService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Dedup-aware upload protocol:
+ * <ol>
+ *     <li>{@code POST /api/uploads} with the ordered chunk fingerprints and sizes, answered with the missing ones</li>
+ *     <li>{@code PUT /api/uploads/{id}/chunks/{fingerprint}} for each missing chunk, in any order and in parallel</li>
+ *     <li>{@code POST /api/uploads/{id}/commit} to save the manifest</li>
+ * </ol>
+ * {@code GET /api/uploads/{id}} lists what is still missing, to resume an interrupted upload.
+ */
+@RestController
+@RequestMapping("/api")
+public class UploadController {
+
+    public record ChunkerInfo(String name, int maxChunkSize) {
+    }
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private Chunker chunker;
+
+    /**
+     * The chunker clients should run so their chunks deduplicate against the server's.
+     */
+    @GetMapping("/chunker")
+    public ChunkerInfo chunker() {
+        return new ChunkerInfo(chunker.getName(), chunker.getMaxChunkSize());
+    }
+
+    @PostMapping("/uploads")
+    public UploadService.UploadStatus startUpload(@RequestBody UploadService.UploadRequest request) {
+        return uploadService.start(request);
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public UploadService.UploadStatus uploadStatus(@PathVariable String uploadId) {
+        return uploadService.getStatus(uploadId);
+    }
+
+    @PutMapping(value = "/uploads/{uploadId}/chunks/{fingerprint}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> putChunk(@PathVariable String uploadId, @PathVariable String fingerprint,
+                                         @RequestBody byte[] data) throws IOException {
+        uploadService.putChunk(uploadId, fingerprint, data);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/uploads/{uploadId}/commit")
+    public FileManifest commitUpload(@PathVariable String uploadId) {
+        return uploadService.commit(uploadId);
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) {
+        uploadService.abort(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.group.javafastfile.repositories;
+
+import com.group.javafastfile.storage.Codec;
+import com.group.javafastfile.storage.PackLocation;
+
+/**
+ * Where a chunk is stored, how it is encoded and how large it is once decompressed.
+ * Chunks written before pack files existed have no location and live in their own file.
+ */
+public record ChunkRecord(String fingerprint, int originalSize, PackLocation location, Codec codec) {
+
+    public boolean isLoose() {
+        return location == null;
+    }
+}
@@ -0,0 +1,150 @@
+package com.group.javafastfile.repositories;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory listing of stored files, kept sorted by name, size and upload time at once so a
+ * page in any order is a bounded walk from the cursor, never a scan or a sort.
+ * <p>
+ * Names sharing a prefix are contiguous in name order, so a prefix query by name walks only the
+ * matching range, either way. Size and upload time interleave them with everything else, so a
+ * prefix query in those orders sorts just the matching range.
+ * <p>
+ * Cursors are opaque strings encoding the sort key of the last entry returned. They stay valid
+ * while files are added or removed; a file changed behind the cursor is simply not seen again.
+ */
+public class FileCatalog {
+
+    public enum Sort {
+        NAME(Comparator.comparing(FileInfo::filename)),
+        SIZE(Comparator.comparingLong(FileInfo::originalSize).thenComparing(FileInfo::filename)),
+        DATE(Comparator.comparing(FileInfo::uploadedAt).thenComparing(FileInfo::filename));
+
+        private final Comparator<FileInfo> order;
+
+        Sort(Comparator<FileInfo> order) {
+            this.order = order;
+        }
+
+        public static Sort fromName(String name) {
+            try {
+                return valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown sort: " + name + ", expected name, size or date");
+            }
+        }
+    }
+
+    public record Page(List<FileInfo> files, String nextCursor) {
+    }
+
+    private final Map<String, FileInfo> files = new ConcurrentHashMap<>();
+    private final Map<Sort, NavigableSet<FileInfo>> orders = Map.of(
+            Sort.NAME, new ConcurrentSkipListSet<>(Sort.NAME.order),
+            Sort.SIZE, new ConcurrentSkipListSet<>(Sort.SIZE.order),
+            Sort.DATE, new ConcurrentSkipListSet<>(Sort.DATE.order));
+
+    /**
+     * Add or replace a file, unless the catalog already holds a more recent upload of it.
+     */
+    public synchronized void put(FileInfo info) {
+        FileInfo previous = files.get(info.filename());
+        if (previous != null) {
+            if (previous.uploadedAt().isAfter(info.uploadedAt())) {
+                return;
+            }
+            orders.values().forEach(order -> order.remove(previous));
+        }
+        files.put(info.filename(), info);
+        orders.values().forEach(order -> order.add(info));
+    }
+
+    public synchronized void remove(String filename) {
+        FileInfo previous = files.remove(filename);
+        if (previous != null) {
+            orders.values().forEach(order -> order.remove(previous));
+        }
+    }
+
+    public FileInfo get(String filename) {
+        return files.get(filename);
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * Returns up to {@code limit} files starting with {@code prefix}, in the given order, after the cursor.
+     */
+    public Page list(String prefix, Sort sort, boolean descending, String cursor, int limit) {
+        NavigableSet<FileInfo> order;
+        if (prefix == null || prefix.isEmpty()) {
+            order = orders.get(sort);
+        } else if (sort == Sort.NAME) {
+            order = withPrefix(prefix);
+        } else {
+            order = new TreeSet<>(sort.order);
+            order.addAll(withPrefix(prefix));
+        }
+        if (descending) {
+            order = order.descendingSet();
+        }
+        if (cursor != null && !cursor.isEmpty()) {
+            order = order.tailSet(decodeCursor(sort, cursor), false);
+        }
+
+        List<FileInfo> page = new ArrayList<>(Math.min(limit, 1024));
+        for (FileInfo info : order) {
+            if (page.size() == limit) {
+                return new Page(page, encodeCursor(sort, page.get(page.size() - 1)));
+            }
+            page.add(info);
+        }
+        return new Page(page, null);
+    }
+
+    /**
+     * The names starting with {@code prefix}, as a range of the name order.
+     */
+    private NavigableSet<FileInfo> withPrefix(String prefix) {
+        return orders.get(Sort.NAME).subSet(FileInfo.of(prefix, 0, 0, 0, Instant.EPOCH), true,
+                FileInfo.of(prefix + Character.MAX_VALUE, 0, 0, 0, Instant.EPOCH), true);
+    }
+
+    private static String encodeCursor(Sort sort, FileInfo last) {
+        String key = switch (sort) {
+            case NAME -> "";
+            case SIZE -> Long.toString(last.originalSize());
+            case DATE -> last.uploadedAt().toString();
+        };
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key + "\n" + last.filename()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FileInfo decodeCursor(Sort sort, String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf('\n');
+            String key = decoded.substring(0, separator);
+            String filename = decoded.substring(separator + 1);
+            return switch (sort) {
+                case NAME -> FileInfo.of(filename, 0, 0, 0, Instant.EPOCH);
+                case SIZE -> FileInfo.of(filename, Long.parseLong(key), 0, 0, Instant.EPOCH);
+                case DATE -> FileInfo.of(filename, 0, 0, 0, Instant.parse(key));
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor for sort " + sort.name().toLowerCase(), e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.group.javafastfile.repositories;
+
+import java.time.Instant;
+
+/**
+ * Listing metadata of a stored file. For chunked files {@code storedSize} is what the upload
+ * added to the pack store; for raw files it is the compressed size. Files whose stored size is
+ * not known, such as manifests migrated from the legacy file index, have a stored size of
+ * {@value FileManifest#UNKNOWN_STORED_SIZE} and no saved ratio.
+ */
+public record FileInfo(String filename, long originalSize, long storedSize, int chunkCount, Double savedRatio,
+                       Instant uploadedAt) {
+
+    public static FileInfo of(String filename, long originalSize, long storedSize, int chunkCount, Instant uploadedAt) {
+        Double savedRatio = storedSize < 0 ? null : originalSize == 0 ? 0 : 1 - (double) storedSize / originalSize;
+        return new FileInfo(filename, originalSize, storedSize, chunkCount, savedRatio, uploadedAt);
+    }
+
+    public static FileInfo of(FileManifest manifest) {
+        return of(manifest.filename(), manifest.originalSize(), manifest.storedSize(), manifest.chunkCount(),
+                manifest.createdAt());
+    }
+}
@@ -0,0 +1,16 @@
+package com.group.javafastfile.repositories;
+
+import java.time.Instant;
+
+/**
+ * Metadata of one version of a chunked file. The ordered chunk list itself is loaded on demand.
+ * {@code storedSize} is what the upload added to the pack store, or {@link #UNKNOWN_STORED_SIZE}.
+ */
+public record FileManifest(long id, String filename, int version, String chunker, long originalSize,
+                           long storedSize, int chunkCount, Instant createdAt) {
+
+    /**
+     * Stored size of manifests migrated from the legacy file index, which never recorded it.
+     */
+    public static final long UNKNOWN_STORED_SIZE = -1;
+}
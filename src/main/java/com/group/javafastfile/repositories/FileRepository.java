@@ -1,59 +1,302 @@
 package com.group.javafastfile.repositories;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.group.javafastfile.storage.BlockFrame;
+import com.group.javafastfile.storage.BlockFrameOutputStream;
+import com.group.javafastfile.storage.BlockFrameReader;
+import com.group.javafastfile.storage.Codec;
+import com.group.javafastfile.storage.CompressionPolicy;
+import com.group.javafastfile.storage.FingerprintIndex;
+import com.group.javafastfile.storage.PackLocation;
+import com.group.javafastfile.storage.PackStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
-import net.jpountz.lz4.LZ4Factory;
-import net.jpountz.lz4.LZ4Compressor;
-import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.util.unit.DataSize;
 
 import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 public class FileRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileRepository.class);
+
     public static final String CHUNK_DIR = "chunks/";
     private static final String FILE_INDEX = "chunks/file_index.json";
 
     public static final String UPLOAD_DIR = "uploads/";
     private static final String FILE_LIST = "uploads/file_list.json";
+    private static final String UPLOADING_SUFFIX = ".uploading";
+
+    private static final int DIRECT_BUFFER_SIZE = 16 * 1024;
+    private final ThreadLocal<byte[]> encodeBuffer = new ThreadLocal<>();
+    private final ThreadLocal<ByteBuffer> compressedBuffer = new ThreadLocal<>();
+    private final ThreadLocal<ByteBuffer> decompressedBuffer = new ThreadLocal<>();
 
-    private final LZ4Factory lz4Factory = LZ4Factory.fastestInstance();
-    private final LZ4Compressor compressor = lz4Factory.fastCompressor();
-    private final LZ4FastDecompressor decompressor = lz4Factory.fastDecompressor();
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int INDEX_LOAD_PAGE_SIZE = 100_000;
+
+    private static final RowMapper<ChunkRecord> CHUNK_RECORD_MAPPER = (rs, rowNum) -> {
+        int packId = rs.getInt("pack_id");
+        PackLocation location = rs.wasNull() ? null
+                : new PackLocation(packId, rs.getLong("pack_offset"), rs.getInt("compressed_size"));
+        return new ChunkRecord(rs.getString("fingerprint"), rs.getInt("original_size"), location,
+                Codec.fromId(rs.getInt("codec")));
+    };
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
-    public void saveChunk(String hash, byte[] chunk) throws IOException {
-        Path chunkPath = Paths.get(CHUNK_DIR, hash);
-        if (!Files.exists(chunkPath.getParent())) {
-            Files.createDirectories(chunkPath.getParent());
+    @Autowired
+    private PackStore packStore;
+
+    @Autowired
+    private CompressionPolicy compressionPolicy;
+
+    @Value("${fastfile.index.expected-chunks:1000000}")
+    private long expectedChunks;
+
+    @Value("${fastfile.raw.block-size:1MB}")
+    private DataSize rawBlockSize;
+
+    @Value("${fastfile.storage.root:.}")
+    private Path storageRoot;
+
+    private FingerprintIndex fingerprintIndex;
+
+    private final FileCatalog rawCatalog = new FileCatalog();
+
+    @PostConstruct
+    void load() throws IOException {
+        loadFingerprintIndex();
+        loadRawCatalog();
+    }
+
+    /**
+     * Load every known fingerprint into the in-process index, one page at a time.
+     */
+    private void loadFingerprintIndex() {
+        fingerprintIndex = new FingerprintIndex(expectedChunks);
+
+        String lastFingerprint = "";
+        while (true) {
+            List<ChunkRecord> page = jdbcTemplate.query(
+                    "SELECT fingerprint, original_size, pack_id, pack_offset, compressed_size, codec FROM chunk_fingerprints " +
+                            "WHERE fingerprint > ? ORDER BY fingerprint LIMIT ?",
+                    CHUNK_RECORD_MAPPER, lastFingerprint, INDEX_LOAD_PAGE_SIZE);
+            for (ChunkRecord chunk : page) {
+                fingerprintIndex.putIfAbsent(HEX.parseHex(chunk.fingerprint()),
+                        new FingerprintIndex.Entry(chunk.originalSize(), chunk.location(), chunk.codec()));
+            }
+            if (page.size() < INDEX_LOAD_PAGE_SIZE) {
+                break;
+            }
+            lastFingerprint = page.get(page.size() - 1).fingerprint();
+        }
+
+        logger.info("Loaded {} chunk fingerprints into the index ({} MB off-heap)",
+                fingerprintIndex.size(), fingerprintIndex.memoryBytes() / (1024 * 1024));
+    }
+
+    /**
+     * Compress and append new chunks to the pack store, then record them in a single batch.
+     * Chunks are published to the fingerprint index only once their rows are committed, so a
+     * concurrent upload never dedups against a chunk whose insert may still fail. When another
+     * worker raced us to the same fingerprint, its row wins and is what gets indexed.
+     *
+     * @param keys raw fingerprints of the chunks, in the same order
+     * @return the number of bytes appended to the pack store
+     */
+    public long saveChunks(List<byte[]> keys, List<byte[]> chunks) throws IOException {
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+
+        List<Object[]> rows = new ArrayList<>(chunks.size());
+        List<FingerprintIndex.Entry> entries = new ArrayList<>(chunks.size());
+        long appendedBytes = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            byte[] data = chunks.get(i);
+            byte[] encoded = encodeBuffer(Codec.maxEncodedLength(data.length));
+            CompressionPolicy.Encoded result = compressionPolicy.encode(data, 0, data.length, encoded, 0);
+            PackLocation location = packStore.append(encoded, 0, result.length());
+            appendedBytes += result.length();
+
+            rows.add(new Object[]{HEX.formatHex(keys.get(i)), data.length,
+                    location.packId(), location.offset(), location.length(), result.codec().getId()});
+            entries.add(new FingerprintIndex.Entry(data.length, location, result.codec()));
+        }
+        // Committed rows must never point at pack bytes still in the page cache, same as in moveChunks
+        packStore.force();
+
+        int[] inserted = jdbcTemplate.batchUpdate("INSERT INTO chunk_fingerprints (fingerprint, original_size, pack_id, pack_offset, compressed_size, codec) " +
+                "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING", rows);
+        List<Object> raced = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (inserted[i] == 1) {
+                fingerprintIndex.putIfAbsent(keys.get(i), entries.get(i));
+            } else {
+                raced.add(rows.get(i)[0]);
+            }
+        }
+        if (!raced.isEmpty()) {
+            // Our copies of these are dead pack bytes, the committed rows point at the winners' copies
+            jdbcTemplate.query(
+                    "SELECT fingerprint, original_size, pack_id, pack_offset, compressed_size, codec FROM chunk_fingerprints " +
+                            "WHERE fingerprint = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", raced.toArray())),
+                    rs -> {
+                        ChunkRecord chunk = CHUNK_RECORD_MAPPER.mapRow(rs, 0);
+                        fingerprintIndex.putIfAbsent(HEX.parseHex(chunk.fingerprint()),
+                                new FingerprintIndex.Entry(chunk.originalSize(), chunk.location(), chunk.codec()));
+                    });
+        }
+        return appendedBytes;
+    }
+
+    public long countIndexedChunks() {
+        return fingerprintIndex.size();
+    }
+
+    /**
+     * Returns the positions of the given raw fingerprints that are already stored, answered from
+     * the in-process index.
+     */
+    public BitSet findExistingFingerprints(List<byte[]> keys) {
+        BitSet existing = new BitSet(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            if (fingerprintIndex.contains(keys.get(i))) {
+                existing.set(i);
+            }
         }
+        return existing;
+    }
 
-        byte[] compressedChunk = compressor.compress(chunk);
-        Files.write(chunkPath, compressedChunk);
+    /**
+     * Returns up to {@code limit} fingerprints after {@code after}, in order, that no manifest references.
+     */
+    public List<String> findUnreferencedFingerprints(String after, int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT cf.fingerprint FROM chunk_fingerprints cf WHERE cf.fingerprint > ? " +
+                        "AND NOT EXISTS (SELECT 1 FROM file_chunks fc WHERE fc.fingerprint = cf.fingerprint) " +
+                        "ORDER BY cf.fingerprint LIMIT ?",
+                String.class, after, limit);
+    }
+
+    /**
+     * Delete those of the given chunks that are still unreferenced, from the table, the index and,
+     * for loose chunks, the disk. Callers must make sure no upload can start referencing them meanwhile.
+     *
+     * @return the deleted chunks
+     */
+    public List<ChunkRecord> deleteUnreferencedChunks(Collection<String> fingerprints) throws IOException {
+        if (fingerprints.isEmpty()) {
+            return List.of();
+        }
+        Object[] candidates = fingerprints.toArray();
+        List<ChunkRecord> unreferenced = jdbcTemplate.query(
+                "SELECT cf.fingerprint, cf.original_size, cf.pack_id, cf.pack_offset, cf.compressed_size, cf.codec " +
+                        "FROM chunk_fingerprints cf WHERE cf.fingerprint = ANY(?) " +
+                        "AND NOT EXISTS (SELECT 1 FROM file_chunks fc WHERE fc.fingerprint = cf.fingerprint)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", candidates)),
+                CHUNK_RECORD_MAPPER);
+        if (unreferenced.isEmpty()) {
+            return unreferenced;
+        }
 
-        if (!fingerprintExists(hash)) {
-            jdbcTemplate.update("INSERT INTO chunk_fingerprints (fingerprint, original_size) VALUES (?, ?)", hash, chunk.length);
+        Object[] deleted = unreferenced.stream().map(ChunkRecord::fingerprint).toArray();
+        jdbcTemplate.update("DELETE FROM chunk_fingerprints WHERE fingerprint = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", deleted)));
+        for (ChunkRecord chunk : unreferenced) {
+            fingerprintIndex.remove(HEX.parseHex(chunk.fingerprint()));
+            if (chunk.isLoose()) {
+                Files.deleteIfExists(storageRoot.resolve(CHUNK_DIR).resolve(chunk.fingerprint()));
+            }
         }
+        return unreferenced;
+    }
+
+    /**
+     * Bytes of live records per pack segment.
+     */
+    public Map<Integer, Long> findLivePackBytes() {
+        Map<Integer, Long> liveBytes = new HashMap<>();
+        jdbcTemplate.query("SELECT pack_id, SUM(compressed_size) AS live_bytes FROM chunk_fingerprints " +
+                        "WHERE pack_id IS NOT NULL GROUP BY pack_id",
+                rs -> {
+                    liveBytes.put(rs.getInt("pack_id"), rs.getLong("live_bytes"));
+                });
+        return liveBytes;
+    }
+
+    public List<ChunkRecord> findPackedChunks(int packId) {
+        return jdbcTemplate.query(
+                "SELECT fingerprint, original_size, pack_id, pack_offset, compressed_size, codec FROM chunk_fingerprints " +
+                        "WHERE pack_id = ? ORDER BY pack_offset",
+                CHUNK_RECORD_MAPPER, packId);
     }
 
+    /**
+     * Copy chunks out of a sealed pack into the active one, still encoded, and point the table
+     * and the index at the copies. The copies are flushed before the table is updated, so a
+     * committed row never points at bytes a crash could lose. Readers holding the old location
+     * keep working until the old pack is retired.
+     *
+     * @return the number of bytes copied
+     */
+    public long moveChunks(List<ChunkRecord> chunks) throws IOException {
+        List<Object[]> rows = new ArrayList<>(chunks.size());
+        List<ChunkRecord> moved = new ArrayList<>(chunks.size());
+        long copiedBytes = 0;
+        for (ChunkRecord chunk : chunks) {
+            PackLocation from = chunk.location();
+            byte[] encoded = encodeBuffer(from.length());
+            packStore.map(from).get((int) from.offset(), encoded, 0, from.length());
+            PackLocation to = packStore.append(encoded, 0, from.length());
+            copiedBytes += from.length();
+
+            rows.add(new Object[]{to.packId(), to.offset(), to.length(), chunk.fingerprint(), from.packId(), from.offset()});
+            moved.add(new ChunkRecord(chunk.fingerprint(), chunk.originalSize(), to, chunk.codec()));
+        }
+        packStore.force();
 
-    public boolean exists(String hash) {
-        return Files.exists(Paths.get(CHUNK_DIR, hash));
+        jdbcTemplate.batchUpdate("UPDATE chunk_fingerprints SET pack_id = ?, pack_offset = ?, compressed_size = ? " +
+                "WHERE fingerprint = ? AND pack_id = ? AND pack_offset = ?", rows);
+        for (ChunkRecord chunk : moved) {
+            fingerprintIndex.replace(HEX.parseHex(chunk.fingerprint()),
+                    new FingerprintIndex.Entry(chunk.originalSize(), chunk.location(), chunk.codec()));
+        }
+        return copiedBytes;
     }
 
-    public Map<String, List<String>> loadFileIndex() {
-        Path fileIndexPath = Paths.get(FILE_INDEX);
+    /**
+     * Read the manifests of the former JSON file index, if it is still around.
+     */
+    public Map<String, List<String>> loadLegacyFileIndex() {
+        Path fileIndexPath = storageRoot.resolve(FILE_INDEX);
         if (!Files.exists(fileIndexPath)) {
             return new HashMap<>();
         }
@@ -65,36 +308,177 @@ public class FileRepository {
         }
     }
 
-    public void saveFileIndex(Map<String, List<String>> fileIndex) throws IOException {
-        Path fileIndexPath = Paths.get(FILE_INDEX);
-        Files.write(fileIndexPath, new ObjectMapper().writeValueAsBytes(fileIndex));
+    public void archiveLegacyFileIndex() throws IOException {
+        Path fileIndexPath = storageRoot.resolve(FILE_INDEX);
+        Files.move(fileIndexPath, fileIndexPath.resolveSibling("file_index.json.migrated"),
+                StandardCopyOption.REPLACE_EXISTING);
     }
 
-    public boolean fingerprintExists(String fingerprint) {
-        Integer count = jdbcTemplate.queryForObject(
-                "SELECT COUNT(*) FROM chunk_fingerprints WHERE fingerprint = ?", Integer.class, fingerprint);
-        return count != null && count > 0;
+    /**
+     * Fetch the size and location of every given chunk from the index,
+     * falling back to a single query for any fingerprint it does not know.
+     */
+    public Map<String, ChunkRecord> findChunks(Collection<String> fingerprints) {
+        Map<String, ChunkRecord> chunks = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String fingerprint : fingerprints) {
+            FingerprintIndex.Entry entry = fingerprintIndex.get(HEX.parseHex(fingerprint));
+            if (entry != null) {
+                chunks.put(fingerprint, new ChunkRecord(fingerprint, entry.originalSize(), entry.location(), entry.codec()));
+            } else {
+                missing.add(fingerprint);
+            }
+        }
+        if (missing.isEmpty()) {
+            return chunks;
+        }
+
+        jdbcTemplate.query(
+                "SELECT fingerprint, original_size, pack_id, pack_offset, compressed_size, codec FROM chunk_fingerprints " +
+                        "WHERE fingerprint = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", missing.toArray())),
+                rs -> {
+                    ChunkRecord chunk = CHUNK_RECORD_MAPPER.mapRow(rs, 0);
+                    chunks.put(chunk.fingerprint(), chunk);
+                });
+        return chunks;
     }
 
-    public byte[] decompressChunk(byte[] compressedData, int originalSize) {
-        return decompressor.decompress(compressedData, originalSize);
+    /**
+     * Read and decode a chunk into a per-thread direct buffer, with the codec it was stored with.
+     * The returned buffer is only valid until the next call on the same thread.
+     */
+    public ByteBuffer readChunk(ChunkRecord chunk) throws IOException {
+        return readChunk(chunk, directBuffer(decompressedBuffer, chunk.originalSize()));
     }
 
-    public int determineOriginalSize(String hash) {
-        return jdbcTemplate.queryForObject(
-                "SELECT original_size FROM chunk_fingerprints WHERE fingerprint = ?",
-                Integer.class, hash
-        );
+    /**
+     * Read and decode a chunk into the given buffer, which must have room for its original size.
+     *
+     * @return the buffer, positioned at 0 and limited to the chunk
+     */
+    public ByteBuffer readChunk(ChunkRecord chunk, ByteBuffer decompressed) throws IOException {
+        decompressed.clear().limit(chunk.originalSize());
+        if (chunk.isLoose()) {
+            ByteBuffer compressed = readLooseChunk(chunk.fingerprint());
+            chunk.codec().decode(compressed, 0, decompressed, 0, chunk.originalSize());
+        } else {
+            PackLocation location = chunk.location();
+            ByteBuffer pack = packStore.map(location);
+            chunk.codec().decode(pack, (int) location.offset(), decompressed, 0, chunk.originalSize());
+        }
+        return decompressed;
     }
 
-    public int determineOriginalSizeRaw(String filename) {
+    private ByteBuffer readLooseChunk(String hash) throws IOException {
+        Path chunkPath = storageRoot.resolve(CHUNK_DIR).resolve(hash);
+        try (FileChannel channel = FileChannel.open(chunkPath, StandardOpenOption.READ)) {
+            ByteBuffer compressed = directBuffer(compressedBuffer, (int) channel.size());
+            while (compressed.hasRemaining()) {
+                if (channel.read(compressed) < 0) {
+                    throw new IOException("Unexpected end of chunk: " + hash);
+                }
+            }
+            return compressed;
+        }
+    }
+
+    private byte[] encodeBuffer(int size) {
+        byte[] buffer = encodeBuffer.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new byte[size];
+            encodeBuffer.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static ByteBuffer directBuffer(ThreadLocal<ByteBuffer> holder, int size) {
+        ByteBuffer buffer = holder.get();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, DIRECT_BUFFER_SIZE));
+            holder.set(buffer);
+        }
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /**
+     * Create a temporary file next to where a raw upload will live. Nothing reads it until it is
+     * published with {@link #publishRawFile}; callers delete it if the upload fails.
+     */
+    public Path createRawTempFile(String filename) throws IOException {
+        Path uploadPath = storageRoot.resolve(UPLOAD_DIR).normalize();
+        Files.createDirectories(uploadPath);
+        if (!uploadPath.resolve(filename).normalize().getParent().equals(uploadPath)) {
+            throw new RuntimeException("Invalid file name: " + filename);
+        }
+        // Unique, so concurrent uploads of the same name do not write into each other
+        return Files.createTempFile(uploadPath, filename + ".", UPLOADING_SUFFIX);
+    }
+
+    /**
+     * Open a raw upload for writing, as a block-indexed LZ4 frame while it streams in.
+     */
+    public BlockFrameOutputStream openRawFrame(Path tempFile) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile));
+        return new BlockFrameOutputStream(out, compressionPolicy, (int) rawBlockSize.toBytes());
+    }
+
+    /**
+     * Make a complete raw upload visible under its name, replacing any previous file in one step,
+     * then record its metadata. Downloads already reading the previous file keep their open handle.
+     */
+    public void publishRawFile(String filename, Path tempFile, long compressedSize, long originalSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempFile, storageRoot.resolve(UPLOAD_DIR).resolve(filename),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        save(filename, compressedSize, originalSize);
+    }
+
+    /**
+     * Open a raw file for random access. Files stored before the frame format are converted on first access.
+     */
+    public BlockFrameReader openRawFile(String filename) throws IOException {
+        Path filePath = storageRoot.resolve(UPLOAD_DIR).resolve(filename).normalize();
+        if (!Files.exists(filePath)) {
+            throw new RuntimeException("File not found: " + filename);
+        }
+        if (!BlockFrame.isFrame(filePath)) {
+            convertLegacyRawFile(filename, filePath);
+        }
+        return new BlockFrameReader(filePath);
+    }
+
+    private synchronized void convertLegacyRawFile(String filename, Path filePath) throws IOException {
+        if (BlockFrame.isFrame(filePath)) {
+            return;
+        }
+        // The former format is a single LZ4 block, so this is the last time it is decoded in one piece
+        byte[] data = new byte[determineOriginalSizeRaw(filename)];
+        Codec.LZ4_FAST.decode(Files.readAllBytes(filePath), 0, data, 0, data.length);
+        Path tempFile = filePath.resolveSibling(filePath.getFileName() + ".converting");
+        BlockFrameOutputStream out = new BlockFrameOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile)), compressionPolicy, (int) rawBlockSize.toBytes());
+        try (out) {
+            out.write(data);
+        }
+        Files.move(tempFile, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileInfo previous = rawCatalog.get(filename);
+        save(filename, out.getCompressedSize(), out.getOriginalSize(),
+                previous != null ? previous.uploadedAt() : Instant.now());
+        logger.info("Converted raw file {} to the block frame format", filename);
+    }
+
+    private int determineOriginalSizeRaw(String filename) {
         try {
-            Path fileIndexPath = Paths.get(FILE_LIST);
+            Path fileIndexPath = storageRoot.resolve(FILE_LIST);
             if (!Files.exists(fileIndexPath)) {
                 throw new RuntimeException("File metadata not found");
             }
 
-            Map<String, Map<String, Integer>> fileList;
+            Map<String, Map<String, Number>> fileList;
             try (BufferedReader reader = Files.newBufferedReader(fileIndexPath)) {
                 fileList = new ObjectMapper().readValue(reader, Map.class);
             }
@@ -103,35 +487,23 @@ public class FileRepository {
                 throw new RuntimeException("Metadata for file not found: " + filename);
             }
 
-            return fileList.get(filename).get("original_size");
+            return fileList.get(filename).get("original_size").intValue();
         } catch (IOException e) {
             throw new RuntimeException("Failed to retrieve original size for: " + filename, e);
         }
     }
 
-
     /**
-     * Compress data using LZ4 before storing.
-     */
-    public byte[] compressData(byte[] data) {
-        return compressor.compress(data);
-    }
-
-    /**
-     * Decompress LZ4-compressed data.
+     * Save metadata about raw files (compressed size & original size).
      */
-    public byte[] decompressData(byte[] compressedData, int originalSize) {
-        return decompressor.decompress(compressedData, originalSize);
+    public void save(String fileName, long compressedSize, long originalSize) {
+        save(fileName, compressedSize, originalSize, Instant.now());
     }
 
-
-    /**
-     * Save metadata about raw files (compressed size & original size).
-     */
-    public void save(String fileName, int compressedSize, int originalSize) {
+    private synchronized void save(String fileName, long compressedSize, long originalSize, Instant uploadedAt) {
         try {
-            Path fileIndexPath = Paths.get(FILE_LIST);
-            Map<String, Map<String, Integer>> fileList = new HashMap<>();
+            Path fileIndexPath = storageRoot.resolve(FILE_LIST);
+            Map<String, Map<String, Long>> fileList = new HashMap<>();
 
             if (Files.exists(fileIndexPath)) {
                 try (BufferedReader reader = Files.newBufferedReader(fileIndexPath)) {
@@ -139,27 +511,84 @@ public class FileRepository {
                 }
             }
 
-            Map<String, Integer> sizeMap = new HashMap<>();
+            Map<String, Long> sizeMap = new HashMap<>();
             sizeMap.put("compressed_size", compressedSize);
             sizeMap.put("original_size", originalSize);
+            sizeMap.put("uploaded_at", uploadedAt.toEpochMilli());
             fileList.put(fileName, sizeMap);
 
             Files.write(fileIndexPath, new ObjectMapper().writeValueAsBytes(fileList));
+            rawCatalog.put(FileInfo.of(fileName, originalSize, compressedSize, 0, uploadedAt));
         } catch (IOException e) {
             throw new RuntimeException("Failed to save file metadata: " + fileName, e);
         }
     }
 
-    public List<String> listRawFiles() {
-        try {
-            return Files.list(Paths.get(UPLOAD_DIR))
-                    .map(Path::getFileName)
-                    .map(Path::toString)
-                    .filter(filename -> !filename.equals("file_list.json")) // Exclude metadata file
-                    .collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new RuntimeException("Could not list raw files", e);
+    public synchronized void deleteRawFile(String filename) throws IOException {
+        Path filePath = storageRoot.resolve(UPLOAD_DIR).resolve(filename).normalize();
+        if (!filePath.getParent().equals(storageRoot.resolve(UPLOAD_DIR).normalize()) || !Files.deleteIfExists(filePath)) {
+            throw new RuntimeException("File not found: " + filename);
+        }
+
+        Path fileIndexPath = storageRoot.resolve(FILE_LIST);
+        if (Files.exists(fileIndexPath)) {
+            Map<String, Object> fileList;
+            try (BufferedReader reader = Files.newBufferedReader(fileIndexPath)) {
+                fileList = new ObjectMapper().readValue(reader, Map.class);
+            }
+            if (fileList.remove(filename) != null) {
+                Files.write(fileIndexPath, new ObjectMapper().writeValueAsBytes(fileList));
+            }
+        }
+        rawCatalog.remove(filename);
+    }
+
+    /**
+     * A page of the raw file listing, answered from memory.
+     */
+    public FileCatalog.Page listRawFiles(String prefix, FileCatalog.Sort sort, boolean descending, String cursor, int limit) {
+        return rawCatalog.list(prefix, sort, descending, cursor, limit);
+    }
+
+    /**
+     * Build the raw file catalog from the metadata file, once. Files stored without metadata
+     * are listed with their size on disk and modification time.
+     */
+    private void loadRawCatalog() throws IOException {
+        Path uploadPath = storageRoot.resolve(UPLOAD_DIR);
+        if (!Files.isDirectory(uploadPath)) {
+            return;
+        }
+
+        Map<String, Map<String, Number>> fileList = new HashMap<>();
+        Path fileIndexPath = storageRoot.resolve(FILE_LIST);
+        if (Files.exists(fileIndexPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(fileIndexPath)) {
+                fileList = new ObjectMapper().readValue(reader, Map.class);
+            }
+        }
+
+        try (Stream<Path> files = Files.list(uploadPath)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String filename = file.getFileName().toString();
+                if (filename.endsWith(UPLOADING_SUFFIX)) {
+                    // Left behind by uploads that were cut short by a restart
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                if (filename.equals("file_list.json") || filename.endsWith(".converting")) {
+                    continue;
+                }
+                Map<String, Number> metadata = fileList.get(filename);
+                long storedSize = metadata != null ? metadata.get("compressed_size").longValue() : Files.size(file);
+                long originalSize = metadata != null ? metadata.get("original_size").longValue() : storedSize;
+                Number uploadedAt = metadata != null ? metadata.get("uploaded_at") : null;
+                rawCatalog.put(FileInfo.of(filename, originalSize, storedSize, 0, uploadedAt != null
+                        ? Instant.ofEpochMilli(uploadedAt.longValue())
+                        : Files.getLastModifiedTime(file).toInstant()));
+            }
         }
+        logger.info("Loaded {} raw files into the catalog", rawCatalog.size());
     }
 
 
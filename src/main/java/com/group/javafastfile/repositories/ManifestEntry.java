@@ -0,0 +1,7 @@
+package com.group.javafastfile.repositories;
+
+/**
+ * One chunk reference of a manifest, with its offset in the original file.
+ */
+public record ManifestEntry(String fingerprint, long offset) {
+}
@@ -0,0 +1,192 @@
+package com.group.javafastfile.repositories;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores file manifests in Postgres, one row per file and one row per chunk reference.
+ * File metadata is mirrored in memory, so lookups and listings never scan the tables.
+ */
+@Repository
+public class ManifestRepository {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final int VERSION_ATTEMPTS = 5;
+    private static final String FILE_COLUMNS = "id, filename, version, chunker, original_size, stored_size, chunk_count, created_at";
+
+    private static final RowMapper<FileManifest> FILE_MANIFEST_MAPPER = (rs, rowNum) -> new FileManifest(
+            rs.getLong("id"),
+            rs.getString("filename"),
+            rs.getInt("version"),
+            rs.getString("chunker"),
+            rs.getLong("original_size"),
+            rs.getLong("stored_size"),
+            rs.getInt("chunk_count"),
+            rs.getTimestamp("created_at").toInstant()
+    );
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${fastfile.versions.keep:10}")
+    private int keepVersions;
+
+    private final Map<String, FileManifest> manifests = new ConcurrentHashMap<>();
+    private final FileCatalog catalog = new FileCatalog();
+
+    @PostConstruct
+    void loadManifests() {
+        backfillChunkOffsets();
+        jdbcTemplate.query("SELECT " + FILE_COLUMNS + " FROM files " +
+                        "WHERE (filename, version) IN (SELECT filename, MAX(version) FROM files GROUP BY filename)",
+                rs -> {
+                    FileManifest manifest = FILE_MANIFEST_MAPPER.mapRow(rs, 0);
+                    manifests.put(manifest.filename(), manifest);
+                    catalog.put(FileInfo.of(manifest));
+                });
+    }
+
+    /**
+     * Compute chunk offsets for manifests saved before offsets were stored.
+     */
+    private void backfillChunkOffsets() {
+        List<Long> fileIds = jdbcTemplate.queryForList(
+                "SELECT DISTINCT file_id FROM file_chunks WHERE chunk_offset IS NULL", Long.class);
+        for (Long fileId : fileIds) {
+            List<Object[]> rows = new ArrayList<>();
+            long[] offset = {0};
+            jdbcTemplate.query("SELECT fc.seq, COALESCE(cf.original_size, 0) AS original_size FROM file_chunks fc " +
+                            "LEFT JOIN chunk_fingerprints cf ON cf.fingerprint = fc.fingerprint " +
+                            "WHERE fc.file_id = ? ORDER BY fc.seq",
+                    rs -> {
+                        rows.add(new Object[]{offset[0], fileId, rs.getInt("seq")});
+                        offset[0] += rs.getInt("original_size");
+                    }, fileId);
+            jdbcTemplate.batchUpdate("UPDATE file_chunks SET chunk_offset = ? WHERE file_id = ? AND seq = ?", rows);
+        }
+    }
+
+    /**
+     * Save a manifest as the next version of its file, in one transaction, and drop versions
+     * beyond {@code fastfile.versions.keep}. Concurrent uploads of the same name race for the
+     * version number; the loser retries with the next one.
+     */
+    public FileManifest saveManifest(String filename, String chunker, long originalSize, long storedSize,
+                                     List<ManifestEntry> entries) {
+        FileManifest manifest = null;
+        for (int attempt = 1; manifest == null; attempt++) {
+            try {
+                manifest = insertVersion(filename, chunker, originalSize, storedSize, entries);
+            } catch (DuplicateKeyException e) {
+                if (attempt == VERSION_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+
+        manifests.merge(filename, manifest,
+                (current, saved) -> saved.version() < current.version() ? current : saved);
+        catalog.put(FileInfo.of(manifest));
+        return manifest;
+    }
+
+    private FileManifest insertVersion(String filename, String chunker, long originalSize, long storedSize,
+                                       List<ManifestEntry> entries) {
+        return transactionTemplate.execute(status -> {
+            FileManifest saved = jdbcTemplate.queryForObject(
+                    "INSERT INTO files (filename, version, chunker, original_size, stored_size, chunk_count) " +
+                            "SELECT ?, COALESCE(MAX(version), 0) + 1, ?, ?, ?, ? FROM files WHERE filename = ? " +
+                            "RETURNING " + FILE_COLUMNS,
+                    FILE_MANIFEST_MAPPER, filename, chunker, originalSize, storedSize, entries.size(), filename);
+
+            for (int start = 0; start < entries.size(); start += INSERT_BATCH_SIZE) {
+                int end = Math.min(start + INSERT_BATCH_SIZE, entries.size());
+                List<Object[]> rows = new ArrayList<>(end - start);
+                for (int seq = start; seq < end; seq++) {
+                    ManifestEntry entry = entries.get(seq);
+                    rows.add(new Object[]{saved.id(), seq, entry.fingerprint(), entry.offset()});
+                }
+                jdbcTemplate.batchUpdate("INSERT INTO file_chunks (file_id, seq, fingerprint, chunk_offset) VALUES (?, ?, ?, ?)", rows);
+            }
+            if (keepVersions > 0) {
+                // Chunks only the dropped versions used are left to the chunk collector
+                jdbcTemplate.update("DELETE FROM files WHERE filename = ? AND version <= ?",
+                        filename, saved.version() - keepVersions);
+            }
+            return saved;
+        });
+    }
+
+    /**
+     * Delete every version of a file and their chunk references. Chunks only they referenced are left to the chunk collector.
+     *
+     * @return {@code false} if there was no such file
+     */
+    public boolean deleteManifest(String filename) {
+        int deleted = jdbcTemplate.update("DELETE FROM files WHERE filename = ?", filename);
+        manifests.remove(filename);
+        catalog.remove(filename);
+        return deleted > 0;
+    }
+
+    /**
+     * Returns the latest version of a file, or {@code null}.
+     */
+    public FileManifest findManifest(String filename) {
+        return manifests.get(filename);
+    }
+
+    /**
+     * Returns a given version of a file, or {@code null}. Older versions are not kept in memory.
+     */
+    public FileManifest findManifest(String filename, int version) {
+        List<FileManifest> found = jdbcTemplate.query(
+                "SELECT " + FILE_COLUMNS + " FROM files WHERE filename = ? AND version = ?",
+                FILE_MANIFEST_MAPPER, filename, version);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    public List<FileManifest> findVersions(String filename) {
+        return jdbcTemplate.query("SELECT " + FILE_COLUMNS + " FROM files WHERE filename = ? ORDER BY version",
+                FILE_MANIFEST_MAPPER, filename);
+    }
+
+    /**
+     * Returns, in order, the chunks of a file that overlap bytes {@code [start, end)}.
+     * Chunk offsets are stored with the manifest, so only those rows are read.
+     */
+    public List<ManifestEntry> findEntries(FileManifest manifest, long start, long end) {
+        return jdbcTemplate.query(
+                "SELECT fingerprint, chunk_offset FROM file_chunks WHERE file_id = ? AND chunk_offset < ? " +
+                        "AND chunk_offset >= (SELECT COALESCE(MAX(chunk_offset), 0) FROM file_chunks " +
+                        "WHERE file_id = ? AND chunk_offset <= ?) ORDER BY seq",
+                (rs, rowNum) -> new ManifestEntry(rs.getString("fingerprint"), rs.getLong("chunk_offset")),
+                manifest.id(), end, manifest.id(), start);
+    }
+
+    public List<String> listFilenames() {
+        return new ArrayList<>(manifests.keySet());
+    }
+
+    /**
+     * A page of the file listing, answered from memory.
+     */
+    public FileCatalog.Page listFiles(String prefix, FileCatalog.Sort sort, boolean descending, String cursor, int limit) {
+        return catalog.list(prefix, sort, descending, cursor, limit);
+    }
+}
@@ -0,0 +1,174 @@
+package com.group.javafastfile.services;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte-budgeted cache of decompressed chunks, keyed by fingerprint.
+ * <p>
+ * With the {@code slru} policy, chunks enter a probation segment and are promoted to a
+ * protected segment on their second hit. A large cold download only cycles through
+ * probation, so it cannot flush chunks that are read repeatedly. The {@code lru} policy
+ * keeps a single segment.
+ * <p>
+ * Readers only copy a missed chunk into the cache once {@link #admit} says so: on its second miss
+ * while its fingerprint is still remembered as a ghost. Fingerprints evicted from probation are
+ * remembered the same way. A cold download read once therefore neither allocates a copy per chunk
+ * nor churns probation.
+ */
+@Component
+public class ChunkCache {
+
+    public record Stats(String policy, long maxBytes, long sizeBytes, int entries,
+                        long hits, long misses, long evictions) {
+    }
+
+    @Value("${fastfile.cache.max-size:256MB}")
+    private DataSize maxSize;
+
+    @Value("${fastfile.cache.policy:slru}")
+    private String policy;
+
+    @Value("${fastfile.cache.protected-ratio:0.8}")
+    private double protectedRatio;
+
+    private static final int MIN_GHOSTS = 1024;
+    private static final int GHOST_CHUNK_SIZE = 8 * 1024;
+
+    private final LinkedHashMap<String, byte[]> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, byte[]> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationBytes;
+    private long protectedBytes;
+    private long maxBytes;
+    private long maxProtectedBytes;
+
+    private final LinkedHashMap<String, Boolean> ghosts = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxGhosts;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    void configure() {
+        maxBytes = maxSize.toBytes();
+        maxProtectedBytes = switch (policy) {
+            case "slru" -> (long) (maxBytes * protectedRatio);
+            case "lru" -> 0;
+            default -> throw new IllegalArgumentException("Unknown cache policy: " + policy);
+        };
+        // Keys only, about as many as chunks of an average size fit in the cache
+        maxGhosts = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_GHOSTS, maxBytes / GHOST_CHUNK_SIZE));
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Returns the cached chunk, or {@code null} on a miss. Callers must not modify it.
+     */
+    public byte[] get(String fingerprint) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        byte[] data;
+        synchronized (this) {
+            data = protectedSegment.get(fingerprint);
+            if (data == null) {
+                data = maxProtectedBytes > 0 ? probation.remove(fingerprint) : probation.get(fingerprint);
+                if (data != null && maxProtectedBytes > 0) {
+                    probationBytes -= data.length;
+                    promote(fingerprint, data);
+                }
+            }
+        }
+
+        if (data == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return data;
+    }
+
+    /**
+     * Whether a chunk that just missed should be put in the cache: only if it missed recently
+     * already. Otherwise its fingerprint is remembered and the caller should not cache it.
+     */
+    public synchronized boolean admit(String fingerprint) {
+        if (!isEnabled()) {
+            return false;
+        }
+        if (ghosts.remove(fingerprint) != null) {
+            return true;
+        }
+        remember(fingerprint);
+        return false;
+    }
+
+    public void put(String fingerprint, byte[] data) {
+        if (!isEnabled() || data.length > maxBytes - maxProtectedBytes) {
+            return;
+        }
+
+        synchronized (this) {
+            if (protectedSegment.containsKey(fingerprint) || probation.containsKey(fingerprint)) {
+                return;
+            }
+            probation.put(fingerprint, data);
+            probationBytes += data.length;
+            evict();
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(policy, maxBytes, probationBytes + protectedBytes,
+                probation.size() + protectedSegment.size(),
+                hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private void promote(String fingerprint, byte[] data) {
+        protectedSegment.put(fingerprint, data);
+        protectedBytes += data.length;
+
+        // Overflow from the protected segment gets a second chance in probation
+        Iterator<Map.Entry<String, byte[]>> eldest = protectedSegment.entrySet().iterator();
+        while (protectedBytes > maxProtectedBytes && eldest.hasNext()) {
+            Map.Entry<String, byte[]> demoted = eldest.next();
+            eldest.remove();
+            protectedBytes -= demoted.getValue().length;
+            probation.put(demoted.getKey(), demoted.getValue());
+            probationBytes += demoted.getValue().length;
+        }
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, byte[]>> eldest = probation.entrySet().iterator();
+        while (probationBytes + protectedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, byte[]> evicted = eldest.next();
+            eldest.remove();
+            probationBytes -= evicted.getValue().length;
+            evictions.increment();
+            remember(evicted.getKey());
+        }
+    }
+
+    private void remember(String fingerprint) {
+        ghosts.put(fingerprint, Boolean.TRUE);
+        if (ghosts.size() > maxGhosts) {
+            Iterator<String> eldest = ghosts.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+}
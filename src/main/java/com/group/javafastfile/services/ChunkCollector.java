@@ -0,0 +1,301 @@
+package com.group.javafastfile.services;
+
+import com.group.javafastfile.repositories.ChunkRecord;
+import com.group.javafastfile.repositories.FileRepository;
+import com.group.javafastfile.storage.Fingerprinter;
+import com.group.javafastfile.storage.PackStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Background mark-and-sweep collector for chunks no manifest references any more.
+ * <p>
+ * Manifests are the roots. Uploads that have not saved their manifest yet pin the fingerprints
+ * they look up or store, under the read side of a lock, and keep them pinned until the manifest
+ * is saved. A sweep batch takes the write side only to drop pinned candidates and delete the rest,
+ * so a concurrent upload either sees the chunk deleted and stores it again, or pins it first.
+ * <p>
+ * Sealed pack segments whose live records fall below a threshold are then compacted: the live
+ * records are copied to the active segment and the old one is deleted. Copying is throttled to
+ * {@code fastfile.gc.max-bytes-per-second}.
+ */
+@Service
+public class ChunkCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkCollector.class);
+
+    private static final int MOVE_BATCH_SIZE = 256;
+
+    public record Stats(long runs, long deletedChunks, long compactedPacks, long reclaimedBytes, Instant lastRun) {
+    }
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private PackStore packStore;
+
+    @Value("${fastfile.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fastfile.gc.interval:10m}")
+    private Duration interval;
+
+    @Value("${fastfile.gc.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${fastfile.gc.min-garbage-ratio:0.5}")
+    private double minGarbageRatio;
+
+    @Value("${fastfile.gc.max-bytes-per-second:64MB}")
+    private DataSize maxBytesPerSecond;
+
+    @Value("${fastfile.gc.retired-pack-grace:1h}")
+    private Duration retiredPackGrace;
+
+    private final ReentrantReadWriteLock sweepLock = new ReentrantReadWriteLock();
+    // Keyed by wrapped raw fingerprints, which compare and hash by content
+    private final Map<ByteBuffer, Integer> pinned = new ConcurrentHashMap<>();
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder deletedChunks = new LongAdder();
+    private final LongAdder compactedPacks = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private volatile Instant lastRun;
+
+    private ScheduledExecutorService collectorExecutor;
+
+    @PostConstruct
+    void startCollector() {
+        if (!enabled) {
+            return;
+        }
+        collectorExecutor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("chunk-gc-"));
+        collectorExecutor.scheduleWithFixedDelay(this::runSafely,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopCollector() {
+        if (collectorExecutor != null) {
+            collectorExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Start tracking the chunks of an upload. Close the returned pins once its manifest is saved,
+     * or once it is abandoned, after which its chunks are collectable again.
+     */
+    public Pins pin() {
+        return new Pins();
+    }
+
+    public Stats getStats() {
+        return new Stats(runs.sum(), deletedChunks.sum(), compactedPacks.sum(), reclaimedBytes.sum(), lastRun);
+    }
+
+    /**
+     * Run one full collection: sweep unreferenced chunks, then compact sparse packs.
+     */
+    public synchronized void collect() throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        Throttle throttle = new Throttle(maxBytesPerSecond.toBytes());
+
+        long deleted = sweep();
+        int compacted = compact(throttle);
+        packStore.releaseRetired(retiredPackGrace);
+
+        runs.increment();
+        lastRun = Instant.now();
+        logger.info("Chunk collection: {} chunks deleted, {} packs compacted in {} ms",
+                deleted, compacted, System.currentTimeMillis() - startTime);
+    }
+
+    private void runSafely() {
+        try {
+            collect();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Chunk collection failed", e);
+        }
+    }
+
+    private long sweep() throws IOException {
+        long deleted = 0;
+        String after = "";
+        while (!Thread.currentThread().isInterrupted()) {
+            List<String> candidates = fileRepository.findUnreferencedFingerprints(after, batchSize);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            after = candidates.get(candidates.size() - 1);
+
+            List<ChunkRecord> removed;
+            sweepLock.writeLock().lock();
+            try {
+                List<String> unpinned = new ArrayList<>(candidates.size());
+                for (String fingerprint : candidates) {
+                    if (!pinned.containsKey(ByteBuffer.wrap(Fingerprinter.toKey(fingerprint)))) {
+                        unpinned.add(fingerprint);
+                    }
+                }
+                removed = fileRepository.deleteUnreferencedChunks(unpinned);
+            } finally {
+                sweepLock.writeLock().unlock();
+            }
+
+            deleted += removed.size();
+            deletedChunks.add(removed.size());
+        }
+        return deleted;
+    }
+
+    private int compact(Throttle throttle) throws IOException, InterruptedException {
+        // Stores hold the read side, so every record already in a sealed pack has its row by now
+        List<Integer> sealedPackIds;
+        Map<Integer, Long> liveBytes;
+        sweepLock.writeLock().lock();
+        try {
+            sealedPackIds = packStore.listSealedPackIds();
+            liveBytes = fileRepository.findLivePackBytes();
+        } finally {
+            sweepLock.writeLock().unlock();
+        }
+
+        int compacted = 0;
+        for (int packId : sealedPackIds) {
+            long size = packStore.packSize(packId);
+            long live = liveBytes.getOrDefault(packId, 0L);
+            if (size == 0 || 1 - (double) live / size < minGarbageRatio) {
+                continue;
+            }
+
+            List<ChunkRecord> chunks = fileRepository.findPackedChunks(packId);
+            for (int start = 0; start < chunks.size(); start += MOVE_BATCH_SIZE) {
+                List<ChunkRecord> batch = chunks.subList(start, Math.min(start + MOVE_BATCH_SIZE, chunks.size()));
+                throttle.acquire(fileRepository.moveChunks(batch));
+            }
+            packStore.retire(packId);
+            compacted++;
+            compactedPacks.increment();
+            reclaimedBytes.add(size - live);
+            logger.info("Compacted pack {}: moved {} chunks, reclaimed {} bytes", packId, chunks.size(), size - live);
+        }
+        return compacted;
+    }
+
+    /**
+     * Fingerprints referenced by one upload that has not saved its manifest yet.
+     * Safe to use from several ingest workers at once.
+     */
+    public final class Pins implements AutoCloseable {
+
+        private final Set<ByteBuffer> fingerprints = ConcurrentHashMap.newKeySet();
+        private volatile boolean closed;
+
+        private Pins() {
+        }
+
+        /**
+         * Pin the given raw fingerprints and return the positions of those already stored. A chunk
+         * reported as stored stays stored until these pins are closed.
+         */
+        public BitSet findExisting(List<byte[]> keys) {
+            sweepLock.readLock().lock();
+            try {
+                pinAll(keys);
+                return fileRepository.findExistingFingerprints(keys);
+            } finally {
+                sweepLock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Store new chunks of this upload, pinning them as well.
+         *
+         * @param keys raw fingerprints of the chunks, in the same order
+         * @return the number of bytes appended to the pack store
+         */
+        public long store(List<byte[]> keys, List<byte[]> chunks) throws IOException {
+            sweepLock.readLock().lock();
+            try {
+                pinAll(keys);
+                return fileRepository.saveChunks(keys, chunks);
+            } finally {
+                sweepLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            for (ByteBuffer key : fingerprints) {
+                pinned.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+            }
+            fingerprints.clear();
+        }
+
+        private void pinAll(List<byte[]> keys) {
+            // A worker still running after the upload failed must not leave pins behind
+            if (closed) {
+                return;
+            }
+            for (byte[] key : keys) {
+                ByteBuffer wrapped = ByteBuffer.wrap(key);
+                if (fingerprints.add(wrapped)) {
+                    pinned.merge(wrapped, 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Spreads copied bytes over time so compaction stays under the configured rate.
+     */
+    private static final class Throttle {
+
+        private final long bytesPerSecond;
+        private final long startNanos = System.nanoTime();
+        private long bytes;
+
+        Throttle(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void acquire(long copied) throws InterruptedException {
+            if (bytesPerSecond <= 0) {
+                return;
+            }
+            bytes += copied;
+            long dueNanos = (long) ((double) bytes / bytesPerSecond * TimeUnit.SECONDS.toNanos(1));
+            long aheadNanos = dueNanos - (System.nanoTime() - startNanos);
+            if (aheadNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.group.javafastfile.services;
+
+import com.group.javafastfile.repositories.ManifestEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What a client holding one version of a file needs to rebuild another. Together the copies and
+ * fetches cover the target exactly once, in target order: copies are byte ranges the client
+ * already has in its source version, fetches are chunks to download from {@code /api/chunks}.
+ * A chunk repeated in the target is listed at each position but only needs fetching once,
+ * which is what {@code fetchBytes} counts.
+ */
+public record ChunkDelta(String filename, int fromVersion, int toVersion, long size,
+                         long copyBytes, long fetchBytes, List<Copy> copies, List<Fetch> fetches) {
+
+    public record Copy(long sourceOffset, long targetOffset, long length) {
+    }
+
+    public record Fetch(String fingerprint, long targetOffset, long length) {
+    }
+
+    /**
+     * Compare two manifests chunk by chunk. Runs of chunks that follow each other in both
+     * versions are merged into a single copy.
+     */
+    public static ChunkDelta between(String filename, int fromVersion, List<ManifestEntry> source, long sourceSize,
+                                     int toVersion, List<ManifestEntry> target, long targetSize) {
+        Map<String, Long> firstSourceOffset = new HashMap<>();
+        Map<Long, String> sourceAtOffset = new HashMap<>();
+        for (ManifestEntry entry : source) {
+            firstSourceOffset.putIfAbsent(entry.fingerprint(), entry.offset());
+            sourceAtOffset.put(entry.offset(), entry.fingerprint());
+        }
+
+        List<Copy> copies = new ArrayList<>();
+        List<Fetch> fetches = new ArrayList<>();
+        Set<String> fetched = new HashSet<>();
+        long copyBytes = 0;
+        long fetchBytes = 0;
+        for (int i = 0; i < target.size(); i++) {
+            ManifestEntry entry = target.get(i);
+            long length = (i + 1 < target.size() ? target.get(i + 1).offset() : targetSize) - entry.offset();
+            Long sourceOffset = firstSourceOffset.get(entry.fingerprint());
+            if (sourceOffset == null) {
+                fetches.add(new Fetch(entry.fingerprint(), entry.offset(), length));
+                if (fetched.add(entry.fingerprint())) {
+                    fetchBytes += length;
+                }
+                continue;
+            }
+
+            copyBytes += length;
+            Copy last = copies.isEmpty() ? null : copies.get(copies.size() - 1);
+            if (last != null && last.targetOffset() + last.length() == entry.offset()) {
+                // Prefer the occurrence right after the previous copy, so the run keeps growing
+                long sourceEnd = last.sourceOffset() + last.length();
+                if (entry.fingerprint().equals(sourceAtOffset.get(sourceEnd))) {
+                    copies.set(copies.size() - 1, new Copy(last.sourceOffset(), last.targetOffset(), last.length() + length));
+                    continue;
+                }
+            }
+            copies.add(new Copy(sourceOffset, entry.offset(), length));
+        }
+        return new ChunkDelta(filename, fromVersion, toVersion, targetSize, copyBytes, fetchBytes, copies, fetches);
+    }
+}
@@ -1,71 +1,148 @@
 package com.group.javafastfile.services;
 
+import com.group.javafastfile.archive.ArchiveWriter;
+import com.group.javafastfile.chunking.ChunkReader;
+import com.group.javafastfile.chunking.Chunker;
+import com.group.javafastfile.repositories.ChunkRecord;
+import com.group.javafastfile.repositories.FileCatalog;
+import com.group.javafastfile.repositories.FileManifest;
 import com.group.javafastfile.repositories.FileRepository;
-import org.rabinfingerprint.fingerprint.RabinFingerprintLong;
-import org.rabinfingerprint.polynomial.Polynomial;
+import com.group.javafastfile.repositories.ManifestEntry;
+import com.group.javafastfile.repositories.ManifestRepository;
+import com.group.javafastfile.storage.BlockFrameOutputStream;
+import com.group.javafastfile.storage.BlockFrameReader;
+import com.group.javafastfile.storage.Fingerprinter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Service
 public class FileService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileService.class);
 
-    private static final int MIN_CHUNK_SIZE = 2048;
-    private static final int MAX_CHUNK_SIZE = 8192;
-    private final Polynomial polynomial = Polynomial.createIrreducible(53);
+    private static final String LEGACY_CHUNKER = "rabin(poly=random)";
 
     @Autowired
     private FileRepository fileRepository;
 
-    public String storeFile(MultipartFile file) {
-        try {
-            long startTime = System.currentTimeMillis();
+    @Autowired
+    private ManifestRepository manifestRepository;
 
-            byte[] data = file.getBytes();
-            int originalSize = data.length;
+    @Autowired
+    private Chunker chunker;
 
-            List<byte[]> chunks = chunkFile(data);
-            int totalChunkSize = 0;
-            List<String> chunkHashes = new ArrayList<>();
+    @Autowired
+    private ChunkCache chunkCache;
 
-            for (byte[] chunk : chunks) {
-                String hash = computeHash(chunk);
-                if (!fileRepository.exists(hash)) {
-                    fileRepository.saveChunk(hash, chunk);
-                    totalChunkSize += chunk.length;
-                }
-                chunkHashes.add(hash);
-            }
+    @Autowired
+    private Fingerprinter fingerprinter;
 
-            // Log chunking time
-            long endTime = System.currentTimeMillis();
-            logger.info("Chunking time for {}: {} ms", file.getOriginalFilename(), (endTime - startTime));
+    @Autowired
+    private StorageMetrics metrics;
 
-            // Log storage savings
-            double storageSaved = 100.0 * (1 - ((double) totalChunkSize / originalSize));
-            logger.info("Storage saved by chunking {}: {}% (Original: {} bytes, Chunks: {} bytes)",
-                    file.getOriginalFilename(), String.format("%.2f", storageSaved), originalSize, totalChunkSize);
+    @Autowired
+    private ChunkCollector chunkCollector;
 
+    @Value("${fastfile.ingest.workers:0}")
+    private int ingestWorkers;
 
-            // Save file index
-            Map<String, List<String>> fileIndex = fileRepository.loadFileIndex();
-            fileIndex.put(file.getOriginalFilename(), chunkHashes);
-            fileRepository.saveFileIndex(fileIndex);
+    @Value("${fastfile.ingest.max-in-flight-bytes:8MB}")
+    private DataSize maxInFlightBytes;
 
+    @Value("${fastfile.ingest.batch-size:64}")
+    private int ingestBatchSize;
+
+    @Value("${fastfile.archive.max-retained:256MB}")
+    private DataSize maxArchiveRetained;
+
+    @Value("${fastfile.download.read-ahead:16}")
+    private int downloadReadAhead;
+
+    @Value("${fastfile.download.decode-workers:0}")
+    private int decodeWorkers;
+
+    // Decompressed chunks held by all archive downloads in progress, bounded by fastfile.archive.max-retained
+    private final AtomicLong archiveRetainedBytes = new AtomicLong();
+
+    private ExecutorService ingestExecutor;
+
+    private ExecutorService decodeExecutor;
+
+    /**
+     * Start the ingest and decode pools, then migrate the legacy file index, which needs the
+     * repository's fingerprint index loaded by now.
+     */
+    @PostConstruct
+    void start() throws IOException {
+        int ingestWorkerCount = ingestWorkers > 0 ? ingestWorkers : Runtime.getRuntime().availableProcessors();
+        ingestExecutor = Executors.newFixedThreadPool(ingestWorkerCount, new CustomizableThreadFactory("ingest-"));
+        int workers = decodeWorkers > 0 ? decodeWorkers : Runtime.getRuntime().availableProcessors();
+        decodeExecutor = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("decode-"));
+
+        migrateLegacyFileIndex();
+    }
+
+    @PreDestroy
+    void stop() {
+        ingestExecutor.shutdownNow();
+        decodeExecutor.shutdownNow();
+    }
+
+    /**
+     * Move manifests from the former file_index.json into the manifest tables, once.
+     */
+    private void migrateLegacyFileIndex() throws IOException {
+        Map<String, List<String>> legacyIndex = fileRepository.loadLegacyFileIndex();
+        if (legacyIndex.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<String, List<String>> entry : legacyIndex.entrySet()) {
+            Map<String, ChunkRecord> chunkRecords = fileRepository.findChunks(new HashSet<>(entry.getValue()));
+            List<ManifestEntry> entries = new ArrayList<>(entry.getValue().size());
+            long originalSize = 0;
+            for (String hash : entry.getValue()) {
+                entries.add(new ManifestEntry(hash, originalSize));
+                ChunkRecord chunkRecord = chunkRecords.get(hash);
+                originalSize += chunkRecord == null ? 0 : chunkRecord.originalSize();
+            }
+            FileManifest existing = manifestRepository.findManifest(entry.getKey());
+            String chunkerName = existing != null ? existing.chunker() : LEGACY_CHUNKER;
+            manifestRepository.saveManifest(entry.getKey(), chunkerName, originalSize,
+                    FileManifest.UNKNOWN_STORED_SIZE, entries);
+        }
+        fileRepository.archiveLegacyFileIndex();
+        logger.info("Migrated {} manifests from the legacy file index", legacyIndex.size());
+    }
+
+    public String storeFile(MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            ingest(file.getOriginalFilename(), in, progress -> {
+            });
             return "File successfully chunked and stored: " + file.getOriginalFilename();
         } catch (IOException e) {
             logger.error("Failed to process file: {}", e.getMessage());
@@ -73,144 +150,577 @@ public class FileService {
         }
     }
 
-    public Resource loadFile(String filename) {
-        try {
-            long startTime = System.currentTimeMillis();
+    /**
+     * Totals of an ingest so far: bytes read, chunks seen, chunks that were new and their size.
+     */
+    public record IngestStats(long bytes, int chunks, int newChunks, long uniqueBytes) {
+    }
 
-            Map<String, List<String>> fileIndex = fileRepository.loadFileIndex();
-            if (!fileIndex.containsKey(filename)) {
-                throw new RuntimeException("File not found: " + filename);
+    /**
+     * Chunk, deduplicate and store a stream under the given name, then save its manifest.
+     * The listener gets running totals each time a batch of chunks has been stored.
+     */
+    public IngestStats ingest(String filename, InputStream in, Consumer<IngestStats> progress) throws IOException {
+        // Pinned until the manifest is saved, so the collector cannot take chunks this upload dedups against
+        try (ChunkCollector.Pins pins = chunkCollector.pin()) {
+            long startTime = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+
+            ChunkReader chunkReader = chunker.open(in);
+            ManifestBuilder manifest = new ManifestBuilder(progress);
+
+            // Boundaries are found here in order, batches of chunks are hashed and persisted on the workers.
+            // The in-flight window keeps results ordered and stops the reader from running ahead.
+            Deque<Future<StoredBatch>> inFlight = new ArrayDeque<>();
+            // Bytes of the submitted batches not awaited yet, bounded by a fixed budget whatever the core count
+            long inFlightBytes = 0;
+            try {
+                List<byte[]> batch = new ArrayList<>(ingestBatchSize);
+                long batchBytes = 0;
+                long chunkingNanos = 0;
+                long readStart = System.nanoTime();
+                byte[] chunk;
+                while ((chunk = chunkReader.next()) != null) {
+                    long readEnd = System.nanoTime();
+                    chunkingNanos += readEnd - readStart;
+                    readStart = readEnd;
+                    batch.add(chunk);
+                    batchBytes += chunk.length;
+                    if (batch.size() < ingestBatchSize) {
+                        continue;
+                    }
+                    while (!inFlight.isEmpty() && inFlightBytes + batchBytes > maxInFlightBytes.toBytes()) {
+                        StoredBatch stored = awaitBatch(inFlight.poll());
+                        inFlightBytes -= stored.bytes();
+                        manifest.add(stored);
+                    }
+                    List<byte[]> chunks = batch;
+                    inFlight.add(ingestExecutor.submit(() -> storeBatch(chunks, pins)));
+                    inFlightBytes += batchBytes;
+                    batch = new ArrayList<>(ingestBatchSize);
+                    batchBytes = 0;
+                    readStart = System.nanoTime();
+                }
+                chunkingNanos += System.nanoTime() - readStart;
+                metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.CHUNK, chunkingNanos);
+                if (!batch.isEmpty()) {
+                    List<byte[]> chunks = batch;
+                    inFlight.add(ingestExecutor.submit(() -> storeBatch(chunks, pins)));
+                }
+                while (!inFlight.isEmpty()) {
+                    manifest.add(awaitBatch(inFlight.poll()));
+                }
+            } finally {
+                // Not interrupted: a worker inside a pack write would close the channel every upload shares
+                inFlight.forEach(future -> future.cancel(false));
             }
+            long originalSize = manifest.size;
+            long totalChunkSize = manifest.storedBytes;
 
-            List<String> chunkHashes = fileIndex.get(filename);
-            Path tempFile = Files.createTempFile("reconstructed_", filename);
+            // Log chunking time
+            long endTime = System.currentTimeMillis();
+            logger.info("Chunking time for {}: {} ms", filename, (endTime - startTime));
 
-            for (String hash : chunkHashes) {
-                Path chunkPath = Paths.get(FileRepository.CHUNK_DIR, hash);
-                byte[] compressedData = Files.readAllBytes(chunkPath);
+            // Log storage savings
+            double storageSaved = 100.0 * (1 - ((double) totalChunkSize / originalSize));
+            logger.info("Storage saved by chunking {}: {}% (Original: {} bytes, Chunks: {} bytes)",
+                    filename, String.format("%.2f", storageSaved), originalSize, totalChunkSize);
 
-                int originalSize = fileRepository.determineOriginalSize(hash);
 
-                byte[] decompressedData = fileRepository.decompressChunk(compressedData, originalSize);
-                Files.write(tempFile, decompressedData, java.nio.file.StandardOpenOption.APPEND);
-            }
+            // Save file manifest
+            long manifestStart = System.nanoTime();
+            manifestRepository.saveManifest(filename, chunker.getName(), originalSize, manifest.appendedBytes, manifest.entries);
+            long manifestEnd = System.nanoTime();
+            metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.MANIFEST_SAVE, manifestEnd - manifestStart);
+            metrics.recordUpload(StorageMetrics.Mode.CHUNKED, originalSize, totalChunkSize, manifest.appendedBytes,
+                    manifest.entries.size(), manifest.newChunks, manifestEnd - startNanos);
 
-            long endTime = System.currentTimeMillis();
-            logger.info("Reconstruction time for {}: {} ms", filename, (endTime - startTime));
+            return manifest.stats();
+        }
+    }
 
-            return new UrlResource(tempFile.toUri());
-        } catch (IOException e) {
-            logger.error("Failed to reconstruct file: {}", filename, e);
-            throw new RuntimeException("Failed to reconstruct file: " + filename, e);
+    /**
+     * Returns the manifest of a chunked file, failing fast when it is unknown.
+     */
+    public FileManifest getManifest(String filename) {
+        FileManifest manifest = manifestRepository.findManifest(filename);
+        if (manifest == null) {
+            throw new RuntimeException("File not found: " + filename);
+        }
+        return manifest;
+    }
+
+    /**
+     * Returns the given version of a chunked file, or the latest one when {@code version} is null.
+     */
+    public FileManifest getManifest(String filename, Integer version) {
+        if (version == null) {
+            return getManifest(filename);
+        }
+        FileManifest manifest = manifestRepository.findManifest(filename, version);
+        if (manifest == null) {
+            throw new RuntimeException("File not found: " + filename + " version " + version);
         }
+        return manifest;
     }
 
-    private List<byte[]> chunkFile(byte[] data) {
-        List<byte[]> chunks = new ArrayList<>();
-        RabinFingerprintLong rabin = new RabinFingerprintLong(polynomial);
+    public List<FileManifest> listVersions(String filename) {
+        List<FileManifest> versions = manifestRepository.findVersions(filename);
+        if (versions.isEmpty()) {
+            throw new RuntimeException("File not found: " + filename);
+        }
+        return versions;
+    }
+
+    /**
+     * Chunk-level delta from one version of a file to another, by default the latest.
+     */
+    public ChunkDelta diff(String filename, int fromVersion, Integer toVersion) {
+        FileManifest source = getManifest(filename, fromVersion);
+        FileManifest target = getManifest(filename, toVersion);
+        ChunkDelta delta = ChunkDelta.between(filename,
+                source.version(), manifestRepository.findEntries(source, 0, source.originalSize()), source.originalSize(),
+                target.version(), manifestRepository.findEntries(target, 0, target.originalSize()), target.originalSize());
+        logger.info("Delta of {} from version {} to {}: {} bytes to copy, {} bytes to fetch", filename,
+                source.version(), target.version(), delta.copyBytes(), delta.fetchBytes());
+        return delta;
+    }
+
+    /**
+     * Returns the decompressed content of a single chunk.
+     */
+    public byte[] getChunk(String fingerprint) throws IOException {
+        byte[] cached = chunkCache.get(fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+        ChunkRecord chunkRecord = fileRepository.findChunks(List.of(fingerprint)).get(fingerprint);
+        if (chunkRecord == null) {
+            throw new RuntimeException("Chunk not found: " + fingerprint);
+        }
+        ByteBuffer chunk = fileRepository.readChunk(chunkRecord);
+        byte[] data = new byte[chunk.remaining()];
+        chunk.get(data);
+        if (chunkCache.admit(fingerprint)) {
+            chunkCache.put(fingerprint, data);
+        }
+        return data;
+    }
 
-        int start = 0;
-        for (int i = 0; i < data.length; i++) {
-            rabin.pushByte(data[i]);
-            if (rabin.getFingerprintLong() % MIN_CHUNK_SIZE == 0 || i - start >= MAX_CHUNK_SIZE) {
-                chunks.add(Arrays.copyOfRange(data, start, i + 1));
-                start = i + 1;
-                rabin.reset();
+    /**
+     * Streams bytes {@code [start, start + length)} of the reconstructed file into the given output.
+     * Only the chunks overlapping the range are read, and no temporary file is written. The next
+     * {@code fastfile.download.read-ahead} chunks are read and decompressed in parallel while
+     * earlier ones are written out.
+     */
+    public void writeFile(FileManifest manifest, long start, long length, OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        long end = start + length;
+
+        List<ManifestEntry> entries = manifestRepository.findEntries(manifest, start, end);
+        long entriesLoaded = System.nanoTime();
+        Set<String> hashes = new HashSet<>();
+        entries.forEach(entry -> hashes.add(entry.fingerprint()));
+        Map<String, ChunkRecord> chunkRecords = fileRepository.findChunks(hashes);
+        long chunksFound = System.nanoTime();
+
+        List<String> fingerprints = entries.stream().map(ManifestEntry::fingerprint).toList();
+        // Decoding overlaps writing, so the decode stage is the time spent waiting for the next chunk
+        long decodeNanos = 0;
+        long writeNanos = 0;
+        try (PrefetchingChunkReader reader = new PrefetchingChunkReader(fingerprints,
+                (hash, slot) -> decodeChunk(hash, chunkRecords.get(hash), manifest.filename(), slot),
+                decodeExecutor, downloadReadAhead)) {
+            for (ManifestEntry entry : entries) {
+                // Part of this chunk that falls inside the requested range
+                int from = (int) Math.max(0, start - entry.offset());
+                long until = end - entry.offset();
+
+                long decodeStart = System.nanoTime();
+                ByteBuffer chunk = reader.next();
+                long writeStart = System.nanoTime();
+                int to = (int) Math.min(chunk.limit(), until);
+                out.write(chunk.array(), chunk.arrayOffset() + from, to - from);
+                decodeNanos += writeStart - decodeStart;
+                writeNanos += System.nanoTime() - writeStart;
             }
         }
-        if (start < data.length) {
-            chunks.add(Arrays.copyOfRange(data, start, data.length));
+        long flushStart = System.nanoTime();
+        out.flush();
+        long endNanos = System.nanoTime();
+
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.MANIFEST_LOAD, entriesLoaded - startNanos);
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.CHUNK_LOOKUP, chunksFound - entriesLoaded);
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.DECODE, decodeNanos);
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.WRITE, writeNanos + endNanos - flushStart);
+        metrics.recordDownload(StorageMetrics.Mode.CHUNKED, length, endNanos - startNanos);
+
+        long endTime = System.currentTimeMillis();
+        logger.info("Reconstruction time for {} (bytes {}-{}): {} ms", manifest.filename(), start, end - 1, (endTime - startTime));
+    }
+
+    /**
+     * Decompress one chunk for a download, on a decode worker. Cached chunks are returned as they
+     * are; otherwise the chunk is decoded into the reusable slot, or into its own array when the
+     * cache admits it, which only happens on a repeated miss.
+     */
+    private ByteBuffer decodeChunk(String hash, ChunkRecord chunkRecord, String filename,
+                                   PrefetchingChunkReader.Slot slot) throws IOException {
+        byte[] cached = chunkCache.get(hash);
+        if (cached != null) {
+            return ByteBuffer.wrap(cached);
+        }
+        if (chunkRecord == null) {
+            throw new IOException("Missing chunk " + hash + " in " + filename);
+        }
+        if (chunkCache.admit(hash)) {
+            byte[] data = new byte[chunkRecord.originalSize()];
+            fileRepository.readChunk(chunkRecord, ByteBuffer.wrap(data));
+            chunkCache.put(hash, data);
+            return ByteBuffer.wrap(data);
+        }
+        return fileRepository.readChunk(chunkRecord, slot.reserve(chunkRecord.originalSize()));
+    }
+
+    /**
+     * Names of the chunked files to put in an archive: the given ones, in order, followed by
+     * those starting with the prefix, sorted. Unknown names fail the request.
+     */
+    public List<FileManifest> resolveArchiveFiles(List<String> filenames, String prefix) {
+        Set<String> names = new LinkedHashSet<>();
+        if (filenames != null) {
+            names.addAll(filenames);
+        }
+        if (prefix != null && !prefix.isEmpty()) {
+            manifestRepository.listFilenames().stream()
+                    .filter(name -> name.startsWith(prefix))
+                    .sorted()
+                    .forEach(names::add);
+        }
+        if (names.isEmpty()) {
+            throw new RuntimeException("No files match the request");
+        }
+        List<FileManifest> manifests = new ArrayList<>(names.size());
+        for (String name : names) {
+            manifests.add(getManifest(name));
         }
-        return chunks;
+        return manifests;
     }
 
-    private String computeHash(byte[] data) {
+    /**
+     * Streams several chunked files into one archive. Chunk reads are planned over the whole
+     * batch: a chunk used by more than one entry is decompressed once and kept until its last use.
+     * Kept chunks count against {@code fastfile.archive.max-retained}, which all archive downloads
+     * share; once it is used up, repeated chunks are decompressed again instead.
+     */
+    public void writeArchive(List<FileManifest> manifests, ArchiveWriter archive) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+
+        Map<FileManifest, List<ManifestEntry>> plan = new LinkedHashMap<>();
+        Map<String, Integer> remainingUses = new HashMap<>();
+        for (FileManifest manifest : manifests) {
+            List<ManifestEntry> entries = manifestRepository.findEntries(manifest, 0, manifest.originalSize());
+            plan.put(manifest, entries);
+            entries.forEach(entry -> remainingUses.merge(entry.fingerprint(), 1, Integer::sum));
+        }
+        long planned = System.nanoTime();
+        Map<String, ChunkRecord> chunkRecords = fileRepository.findChunks(remainingUses.keySet());
+        long chunksFound = System.nanoTime();
+
+        Map<String, byte[]> retained = new HashMap<>();
+        long retainedBytes = 0;
+        long totalBytes = 0;
+        int decoded = 0;
+        long decodeNanos = 0;
+        OutputStream out = archive.entryStream();
+        WritableByteChannel channel = Channels.newChannel(out);
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(data);
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
+            for (Map.Entry<FileManifest, List<ManifestEntry>> file : plan.entrySet()) {
+                FileManifest manifest = file.getKey();
+                archive.beginEntry(manifest.filename(), manifest.originalSize(), manifest.createdAt());
+                for (ManifestEntry entry : file.getValue()) {
+                    String hash = entry.fingerprint();
+                    boolean usedAgain = remainingUses.merge(hash, -1, Integer::sum) > 0;
+
+                    long decodeStart = System.nanoTime();
+                    byte[] data = usedAgain ? retained.get(hash) : retained.remove(hash);
+                    if (data != null) {
+                        if (!usedAgain) {
+                            retainedBytes -= data.length;
+                            archiveRetainedBytes.addAndGet(-data.length);
+                        }
+                    } else {
+                        data = chunkCache.get(hash);
+                    }
+                    if (data != null) {
+                        decodeNanos += System.nanoTime() - decodeStart;
+                        out.write(data);
+                        continue;
+                    }
+
+                    ChunkRecord chunkRecord = chunkRecords.get(hash);
+                    if (chunkRecord == null) {
+                        throw new IOException("Missing chunk " + hash + " in " + manifest.filename());
+                    }
+                    ByteBuffer chunk = fileRepository.readChunk(chunkRecord);
+                    decoded++;
+                    boolean retain = usedAgain && reserveArchiveRetention(chunk.remaining());
+                    boolean cache = chunkCache.admit(hash);
+                    if (retain || cache) {
+                        data = new byte[chunk.remaining()];
+                        chunk.get(data);
+                        if (cache) {
+                            chunkCache.put(hash, data);
+                        }
+                        if (retain) {
+                            retained.put(hash, data);
+                            retainedBytes += data.length;
+                        }
+                        decodeNanos += System.nanoTime() - decodeStart;
+                        out.write(data);
+                    } else {
+                        decodeNanos += System.nanoTime() - decodeStart;
+                        while (chunk.hasRemaining()) {
+                            channel.write(chunk);
+                        }
+                    }
+                }
+                archive.closeEntry();
+                totalBytes += manifest.originalSize();
             }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Hashing algorithm not found", e);
+        } finally {
+            archiveRetainedBytes.addAndGet(-retainedBytes);
         }
+        archive.finish();
+        long endNanos = System.nanoTime();
+
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.MANIFEST_LOAD, planned - startNanos);
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.CHUNK_LOOKUP, chunksFound - planned);
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.DECODE, decodeNanos);
+        metrics.recordDownload(StorageMetrics.Mode.CHUNKED, totalBytes, endNanos - startNanos);
+
+        long endTime = System.currentTimeMillis();
+        logger.info("Archived {} files ({} bytes, {} distinct chunks, {} decompressed) in {} ms",
+                plan.size(), totalBytes, remainingUses.size(), decoded, (endTime - startTime));
     }
 
-    public List<String> listFiles() {
-        return new ArrayList<>(fileRepository.loadFileIndex().keySet());
+    /**
+     * Take {@code bytes} from the retention budget shared by archive downloads, if there is room.
+     */
+    private boolean reserveArchiveRetention(long bytes) {
+        long max = maxArchiveRetained.toBytes();
+        long current;
+        do {
+            current = archiveRetainedBytes.get();
+            if (current + bytes > max) {
+                return false;
+            }
+        } while (!archiveRetainedBytes.compareAndSet(current, current + bytes));
+        return true;
     }
 
-    public String storeFileRaw(MultipartFile file) {
-        try {
-            long startTime = System.currentTimeMillis();
+    /**
+     * Hash a batch of chunks, look them all up in one query and persist the new ones together.
+     */
+    private StoredBatch storeBatch(List<byte[]> chunks, ChunkCollector.Pins pins) throws IOException {
+        long hashStart = System.nanoTime();
+        List<byte[]> keys = fingerprinter.digestAll(chunks);
+        int[] sizes = new int[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            sizes[i] = chunks.get(i).length;
+        }
+
+        long lookupStart = System.nanoTime();
+        BitSet existing = pins.findExisting(keys);
+        List<byte[]> newKeys = new ArrayList<>();
+        List<byte[]> newChunks = new ArrayList<>();
+        Set<ByteBuffer> batchKeys = new HashSet<>();
+        long storedBytes = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            if (!existing.get(i) && batchKeys.add(ByteBuffer.wrap(keys.get(i)))) {
+                newKeys.add(keys.get(i));
+                newChunks.add(chunks.get(i));
+                storedBytes += chunks.get(i).length;
+            }
+        }
+        long saveStart = System.nanoTime();
+        long appendedBytes = pins.store(newKeys, newChunks);
+        long saveEnd = System.nanoTime();
+
+        // Manifests reference chunks by hex, so that is the only place it is needed
+        List<String> hashes = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            hashes.add(Fingerprinter.toHex(key));
+        }
 
-            byte[] fileData = file.getBytes();
-            int originalSize = fileData.length;
-            byte[] compressedData = fileRepository.compressData(fileData); // Compress with LZ4
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.HASH, lookupStart - hashStart);
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.LOOKUP, saveStart - lookupStart);
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.SAVE, saveEnd - saveStart);
+        return new StoredBatch(hashes, sizes, storedBytes, appendedBytes, newChunks.size());
+    }
 
-            int compressedSize = compressedData.length;
-            double compressionRatio = 100.0 * (1 - ((double) compressedSize / originalSize));
+    private StoredBatch awaitBatch(Future<StoredBatch> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while storing chunks", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Failed to store chunks", e.getCause());
+        }
+    }
 
-            Path uploadPath = Paths.get(FileRepository.UPLOAD_DIR);
+    private record StoredBatch(List<String> hashes, int[] sizes, long storedBytes, long appendedBytes, int newChunks) {
 
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
+        long bytes() {
+            long bytes = 0;
+            for (int size : sizes) {
+                bytes += size;
             }
+            return bytes;
+        }
+    }
 
-            Path filePath = uploadPath.resolve(Objects.requireNonNull(file.getOriginalFilename()));
-            Files.write(filePath, compressedData); // Store compressed file
+    /**
+     * Accumulates stored batches, in order, into the entries of a manifest.
+     */
+    private static final class ManifestBuilder {
+        private final List<ManifestEntry> entries = new ArrayList<>();
+        private final Consumer<IngestStats> progress;
+        private long size;
+        private long storedBytes;
+        private long appendedBytes;
+        private int newChunks;
+
+        ManifestBuilder(Consumer<IngestStats> progress) {
+            this.progress = progress;
+        }
 
-            fileRepository.save(file.getOriginalFilename(), compressedSize, originalSize);
+        void add(StoredBatch batch) {
+            for (int i = 0; i < batch.hashes().size(); i++) {
+                entries.add(new ManifestEntry(batch.hashes().get(i), size));
+                size += batch.sizes()[i];
+            }
+            storedBytes += batch.storedBytes();
+            appendedBytes += batch.appendedBytes();
+            newChunks += batch.newChunks();
+            progress.accept(stats());
+        }
 
-            long endTime = System.currentTimeMillis();
-            logger.info("Compression time for {}: {} ms", file.getOriginalFilename(), (endTime - startTime));
-            logger.info("Compression savings for {}: {:.2f}% (Original: {} bytes, Compressed: {} bytes)",
-                    file.getOriginalFilename(), compressionRatio, originalSize, compressedSize);
+        IngestStats stats() {
+            return new IngestStats(size, entries.size(), newChunks, storedBytes);
+        }
+    }
 
-            return "File uploaded successfully (compressed) without chunking: " + file.getOriginalFilename();
-        } catch (IOException e) {
-            logger.error("Failed to upload raw file: {}", e.getMessage());
-            return "Failed to upload raw file: " + e.getMessage();
+    /**
+     * Delete a chunked file. Its chunks are reclaimed by the chunk collector once nothing else references them.
+     */
+    public String deleteFile(String filename) {
+        if (!manifestRepository.deleteManifest(filename)) {
+            throw new RuntimeException("File not found: " + filename);
         }
+        logger.info("Deleted {}", filename);
+        return "File deleted: " + filename;
     }
 
-    public List<String> listFilesRaw() {
-        return fileRepository.listRawFiles();
+    public FileCatalog.Page listFiles(String prefix, FileCatalog.Sort sort, boolean descending, String cursor, int limit) {
+        return manifestRepository.listFiles(prefix, sort, descending, cursor, limit);
     }
 
-    public Resource loadRawFile(String filename) {
+    /**
+     * Store a file without chunking, compressed block by block as it streams in.
+     */
+    public String storeFileRaw(MultipartFile file) {
         try {
             long startTime = System.currentTimeMillis();
-
-            Path filePath = Paths.get(FileRepository.UPLOAD_DIR).resolve(filename).normalize();
-
-            if (!Files.exists(filePath)) {
-                throw new RuntimeException("File not found: " + filename);
+            long startNanos = System.nanoTime();
+
+            String filename = Objects.requireNonNull(file.getOriginalFilename());
+            // Written aside and moved into place once complete, so downloads never see a partial file
+            Path tempFile = fileRepository.createRawTempFile(filename);
+            long originalSize;
+            long compressedSize;
+            long savedNanos;
+            try {
+                BlockFrameOutputStream out = fileRepository.openRawFrame(tempFile);
+                try (InputStream in = file.getInputStream(); out) {
+                    in.transferTo(out);
+                }
+                savedNanos = System.nanoTime();
+                originalSize = out.getOriginalSize();
+                compressedSize = out.getCompressedSize();
+                fileRepository.publishRawFile(filename, tempFile, compressedSize, originalSize);
+            } finally {
+                Files.deleteIfExists(tempFile);
             }
+            double compressionRatio = originalSize == 0 ? 0 : 100.0 * (1 - ((double) compressedSize / originalSize));
+            long endNanos = System.nanoTime();
+            metrics.recordStage(StorageMetrics.Mode.RAW, StorageMetrics.Stage.SAVE, savedNanos - startNanos);
+            metrics.recordStage(StorageMetrics.Mode.RAW, StorageMetrics.Stage.MANIFEST_SAVE, endNanos - savedNanos);
+            metrics.recordUpload(StorageMetrics.Mode.RAW, originalSize, originalSize, compressedSize, 0, 0, endNanos - startNanos);
 
-            // Read compressed file
-            byte[] compressedData = Files.readAllBytes(filePath);
-
-            // Get the original size
-            int originalSize = fileRepository.determineOriginalSizeRaw(filename);
+            long endTime = System.currentTimeMillis();
+            logger.info("Compression time for {}: {} ms", filename, (endTime - startTime));
+            logger.info("Compression savings for {}: {}% (Original: {} bytes, Compressed: {} bytes)",
+                    filename, String.format("%.2f", compressionRatio), originalSize, compressedSize);
 
-            // Decompress the file using LZ4
-            byte[] decompressedData = fileRepository.decompressData(compressedData, originalSize);
+            return "File uploaded successfully (compressed) without chunking: " + filename;
+        } catch (IOException e) {
+            logger.error("Failed to upload raw file: {}", e.getMessage());
+            return "Failed to upload raw file: " + e.getMessage();
+        }
+    }
 
-            // Store decompressed content in a temporary file
-            Path tempFile = Files.createTempFile("decompressed_", filename);
-            Files.write(tempFile, decompressedData);
+    public String deleteFileRaw(String filename) {
+        try {
+            fileRepository.deleteRawFile(filename);
+        } catch (IOException e) {
+            logger.error("Failed to delete raw file: {}", filename, e);
+            throw new RuntimeException("Failed to delete raw file: " + filename, e);
+        }
+        logger.info("Deleted raw file {}", filename);
+        return "File deleted: " + filename;
+    }
 
-            long endTime = System.currentTimeMillis();
-            logger.info("Decompression time for {}: {} ms", filename, (endTime - startTime));
+    public FileCatalog.Page listFilesRaw(String prefix, FileCatalog.Sort sort, boolean descending, String cursor, int limit) {
+        return fileRepository.listRawFiles(prefix, sort, descending, cursor, limit);
+    }
 
-            return new UrlResource(tempFile.toUri());
+    public long getRawFileSize(String filename) {
+        try (BlockFrameReader reader = fileRepository.openRawFile(filename)) {
+            return reader.getOriginalSize();
         } catch (IOException e) {
             logger.error("Failed to load raw file: {}", filename, e);
             throw new RuntimeException("Failed to load raw file: " + filename, e);
         }
     }
 
+    /**
+     * Streams bytes {@code [start, start + length)} of a raw file, decompressing only the blocks they cover.
+     */
+    public void writeRawFile(String filename, long start, long length, OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+
+        long decodeNanos;
+        try (BlockFrameReader reader = fileRepository.openRawFile(filename)) {
+            reader.transferTo(start, length, out);
+            decodeNanos = reader.getDecodeNanos();
+        }
+        out.flush();
+
+        long nanos = System.nanoTime() - startNanos;
+        metrics.recordStage(StorageMetrics.Mode.RAW, StorageMetrics.Stage.DECODE, decodeNanos);
+        metrics.recordStage(StorageMetrics.Mode.RAW, StorageMetrics.Stage.WRITE, nanos - decodeNanos);
+        metrics.recordDownload(StorageMetrics.Mode.RAW, length, nanos);
+
+        long endTime = System.currentTimeMillis();
+        logger.info("Decompression time for {}: {} ms", filename, (endTime - startTime));
+    }
+
 }
@@ -0,0 +1,189 @@
+package com.group.javafastfile.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chunked uploads processed off the request thread. The upload is moved to a spool file,
+ * queued, and the request returns at once with a job id to poll.
+ * <p>
+ * A bounded number of jobs run at a time and a bounded number wait; past that, uploads are
+ * refused with 503 so request threads stay free for everything else. Jobs live in memory:
+ * those queued or running when the server stops are lost and their spool files removed on start.
+ */
+@Service
+public class IngestJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestJobService.class);
+
+    public static final String SPOOL_DIR = "spool/";
+
+    public enum State {QUEUED, RUNNING, DONE, FAILED}
+
+    public record JobStatus(String jobId, String filename, State state, long totalBytes, long processedBytes,
+                            int chunks, int newChunks, double dedupRatio, String error,
+                            Instant submittedAt, Instant finishedAt) {
+    }
+
+    @Autowired
+    private FileService fileService;
+
+    @Value("${fastfile.ingest.jobs.workers:2}")
+    private int workers;
+
+    @Value("${fastfile.ingest.jobs.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${fastfile.ingest.jobs.retention:1h}")
+    private Duration retention;
+
+    @Value("${fastfile.ingest.jobs.retry-after:10s}")
+    private Duration retryAfter;
+
+    @Value("${fastfile.storage.root:.}")
+    private Path storageRoot;
+
+    private final Map<String, IngestJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor jobExecutor;
+
+    @PostConstruct
+    void startJobWorkers() throws IOException {
+        Path spoolDir = storageRoot.resolve(SPOOL_DIR);
+        FileSystemUtils.deleteRecursively(spoolDir);
+        Files.createDirectories(spoolDir);
+        jobExecutor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("ingest-job-"));
+    }
+
+    @PreDestroy
+    void stopJobWorkers() {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * Spool an upload and queue it for ingest.
+     *
+     * @throws ResponseStatusException with 503 when the queue is full
+     */
+    public JobStatus submit(MultipartFile file) throws IOException {
+        purgeFinishedJobs();
+        // The container has already buffered the multipart body by now; refusing here only saves copying it to the spool
+        if (jobExecutor.getQueue().remainingCapacity() == 0) {
+            throw queueFull();
+        }
+
+        IngestJob job = new IngestJob(UUID.randomUUID().toString(),
+                Objects.requireNonNull(file.getOriginalFilename()), file.getSize());
+        Path spoolFile = storageRoot.resolve(SPOOL_DIR).resolve(job.id);
+        file.transferTo(spoolFile);
+        jobs.put(job.id, job);
+        try {
+            jobExecutor.execute(() -> run(job, spoolFile));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            Files.deleteIfExists(spoolFile);
+            throw queueFull();
+        }
+        logger.info("Queued ingest job {} for {} ({} bytes, {} waiting)", job.id, job.filename,
+                job.totalBytes, jobExecutor.getQueue().size());
+        return job.status();
+    }
+
+    public JobStatus getStatus(String jobId) {
+        IngestJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Job not found: " + jobId);
+        }
+        return job.status();
+    }
+
+    private void run(IngestJob job, Path spoolFile) {
+        job.state = State.RUNNING;
+        State outcome = State.FAILED;
+        try (InputStream in = Files.newInputStream(spoolFile)) {
+            FileService.IngestStats stats = fileService.ingest(job.filename, in, progress -> job.progress = progress);
+            job.progress = stats;
+            outcome = State.DONE;
+        } catch (Exception e) {
+            logger.error("Ingest job {} for {} failed", job.id, job.filename, e);
+            job.error = e.getMessage();
+        } finally {
+            try {
+                Files.deleteIfExists(spoolFile);
+            } catch (IOException e) {
+                logger.warn("Could not delete spool file {}", spoolFile, e);
+            }
+            // Published last, so a finished job no longer holds its spool file
+            job.finishedAt = Instant.now();
+            job.state = outcome;
+        }
+    }
+
+    private void purgeFinishedJobs() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private ResponseStatusException queueFull() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Ingest queue is full (" + queueCapacity + " jobs waiting), retry later") {
+            @Override
+            public HttpHeaders getHeaders() {
+                HttpHeaders headers = new HttpHeaders();
+                headers.set("Retry-After", String.valueOf(retryAfter.toSeconds()));
+                return headers;
+            }
+        };
+    }
+
+    private static final class IngestJob {
+        private final String id;
+        private final String filename;
+        private final long totalBytes;
+        private final Instant submittedAt = Instant.now();
+        private volatile State state = State.QUEUED;
+        private volatile FileService.IngestStats progress = new FileService.IngestStats(0, 0, 0, 0);
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        IngestJob(String id, String filename, long totalBytes) {
+            this.id = id;
+            this.filename = filename;
+            this.totalBytes = totalBytes;
+        }
+
+        JobStatus status() {
+            FileService.IngestStats stats = progress;
+            double dedupRatio = stats.bytes() == 0 ? 0 : 1 - (double) stats.uniqueBytes() / stats.bytes();
+            return new JobStatus(id, filename, state, totalBytes, stats.bytes(), stats.chunks(), stats.newChunks(),
+                    dedupRatio, error, submittedAt, finishedAt);
+        }
+    }
+}
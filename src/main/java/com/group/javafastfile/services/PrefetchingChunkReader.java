@@ -0,0 +1,123 @@
+package com.group.javafastfile.services;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the chunks of a manifest in order while the next ones are already being read and
+ * decompressed on a shared pool, so disk reads, decompression and the write to the client overlap.
+ * <p>
+ * At most {@code readAhead} chunks are in flight or waiting to be sent, each decoded into its own
+ * slot buffer. A slot is reused for the chunk {@code readAhead} positions later, once its current
+ * chunk has been handed out and the caller asked for the next one, so memory stays at
+ * {@code readAhead} chunks whatever the file size. With a read-ahead of 1 chunks are decoded on
+ * the calling thread, as before.
+ */
+public class PrefetchingChunkReader implements AutoCloseable {
+
+    /**
+     * Decodes one chunk, into the slot buffer or into a buffer of its own, e.g. a cached copy.
+     */
+    @FunctionalInterface
+    public interface ChunkSource {
+        ByteBuffer read(String fingerprint, Slot slot) throws IOException;
+    }
+
+    /**
+     * Reusable decode buffer of one window position, grown to the largest chunk it has held.
+     */
+    public static final class Slot {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+        public ByteBuffer reserve(int size) {
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(size);
+            }
+            buffer.clear().limit(size);
+            return buffer;
+        }
+    }
+
+    private final List<String> fingerprints;
+    private final ChunkSource source;
+    private final ExecutorService executor;
+    private final Slot[] slots;
+    private final Future<?>[] pending;
+    private int next;
+    private int submitted;
+
+    public PrefetchingChunkReader(List<String> fingerprints, ChunkSource source, ExecutorService executor, int readAhead) {
+        this.fingerprints = fingerprints;
+        this.source = source;
+        this.executor = executor;
+        int window = Math.max(1, Math.min(readAhead, fingerprints.size()));
+        slots = new Slot[window];
+        for (int i = 0; i < window; i++) {
+            slots[i] = new Slot();
+        }
+        pending = new Future<?>[window];
+    }
+
+    public boolean hasNext() {
+        return next < fingerprints.size();
+    }
+
+    /**
+     * Returns the next chunk in manifest order, positioned at 0 and limited to the chunk.
+     * The buffer is only valid until the next call.
+     */
+    public ByteBuffer next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int position = next++;
+        int slot = position % slots.length;
+        if (slots.length == 1) {
+            return source.read(fingerprints.get(position), slots[0]);
+        }
+
+        // The previous chunk has been written out by now, so its slot can take the next one
+        while (submitted < fingerprints.size() && submitted < next + slots.length - 1) {
+            submit(submitted++);
+        }
+        Future<?> future = pending[slot];
+        pending[slot] = null;
+        try {
+            return (ByteBuffer) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading chunk " + fingerprints.get(position));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Could not read chunk " + fingerprints.get(position), e.getCause());
+        }
+    }
+
+    private void submit(int position) {
+        String fingerprint = fingerprints.get(position);
+        Slot slot = slots[position % slots.length];
+        pending[position % slots.length] = executor.submit(() -> source.read(fingerprint, slot));
+    }
+
+    /**
+     * Drop the chunks read ahead but not consumed, e.g. when the client went away mid-download.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < pending.length; i++) {
+            if (pending[i] != null) {
+                pending[i].cancel(false);
+                pending[i] = null;
+            }
+        }
+    }
+}
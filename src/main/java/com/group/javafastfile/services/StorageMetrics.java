@@ -0,0 +1,156 @@
+package com.group.javafastfile.services;
+
+import com.group.javafastfile.repositories.FileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the ingest and retrieval paths, exposed through Actuator.
+ * <p>
+ * Every meter is registered once at startup, so recording is a plain timer or counter update.
+ * Callers accumulate {@link System#nanoTime()} deltas locally and record once per batch or request,
+ * never per byte or per chunk.
+ */
+@Component
+public class StorageMetrics {
+
+    public enum Mode {
+        CHUNKED, RAW
+    }
+
+    public enum Stage {
+        /** Boundary detection while reading an upload */
+        CHUNK,
+        /** Fingerprinting chunks */
+        HASH,
+        /** Looking up which fingerprints are already stored */
+        LOOKUP,
+        /** Encoding and persisting new chunks or raw blocks */
+        SAVE,
+        /** Writing a file manifest */
+        MANIFEST_SAVE,
+        /** Reading the manifest entries a download needs */
+        MANIFEST_LOAD,
+        /** Resolving chunk locations for a download */
+        CHUNK_LOOKUP,
+        /** Reading and decompressing chunks or raw blocks */
+        DECODE,
+        /** Writing to the response */
+        WRITE
+    }
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private ChunkCache chunkCache;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    private final Timer[][] stages = new Timer[Mode.values().length][Stage.values().length];
+    private final Timer[] uploads = new Timer[Mode.values().length];
+    private final Timer[] downloads = new Timer[Mode.values().length];
+    private final Counter[] ingestedBytes = new Counter[Mode.values().length];
+    private final Counter[] storedBytes = new Counter[Mode.values().length];
+    private final Counter[] downloadedBytes = new Counter[Mode.values().length];
+    private Counter uniqueBytes;
+    private Counter ingestedChunks;
+    private Counter newChunks;
+
+    @PostConstruct
+    void register() {
+        for (Mode mode : Mode.values()) {
+            String modeTag = tag(mode);
+            for (Stage stage : Stage.values()) {
+                stages[mode.ordinal()][stage.ordinal()] = Timer.builder("fastfile.stage")
+                        .description("Time spent per stage of an upload or download")
+                        .tag("mode", modeTag)
+                        .tag("stage", tag(stage))
+                        .publishPercentileHistogram()
+                        .register(registry);
+            }
+            uploads[mode.ordinal()] = Timer.builder("fastfile.upload").tag("mode", modeTag)
+                    .publishPercentileHistogram().register(registry);
+            downloads[mode.ordinal()] = Timer.builder("fastfile.download").tag("mode", modeTag)
+                    .publishPercentileHistogram().register(registry);
+            ingestedBytes[mode.ordinal()] = Counter.builder("fastfile.ingested.bytes").tag("mode", modeTag)
+                    .description("Bytes received in uploads").baseUnit("bytes").register(registry);
+            storedBytes[mode.ordinal()] = Counter.builder("fastfile.stored.bytes").tag("mode", modeTag)
+                    .description("Bytes written to disk after dedup and compression").baseUnit("bytes").register(registry);
+            downloadedBytes[mode.ordinal()] = Counter.builder("fastfile.downloaded.bytes").tag("mode", modeTag)
+                    .baseUnit("bytes").register(registry);
+
+            Gauge.builder("fastfile.compression.ratio", this, metrics -> metrics.compressionRatio(mode))
+                    .description("Bytes before compression per byte stored").tag("mode", modeTag).register(registry);
+        }
+
+        uniqueBytes = Counter.builder("fastfile.unique.bytes")
+                .description("Bytes of chunks that were not stored yet, before compression").baseUnit("bytes").register(registry);
+        ingestedChunks = Counter.builder("fastfile.ingested.chunks").register(registry);
+        newChunks = Counter.builder("fastfile.new.chunks").register(registry);
+
+        Gauge.builder("fastfile.dedup.ratio", this, metrics -> ratio(metrics.ingestedBytes[Mode.CHUNKED.ordinal()], metrics.uniqueBytes))
+                .description("Chunked bytes received per unique byte").register(registry);
+        Gauge.builder("fastfile.chunk.average.size", this, metrics -> ratio(metrics.ingestedBytes[Mode.CHUNKED.ordinal()], metrics.ingestedChunks))
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("fastfile.chunks.stored", fileRepository, FileRepository::countIndexedChunks)
+                .description("Distinct chunks in the fingerprint index").register(registry);
+
+        Gauge.builder("fastfile.cache.size", chunkCache, cache -> cache.getStats().sizeBytes()).baseUnit("bytes").register(registry);
+        Gauge.builder("fastfile.cache.entries", chunkCache, cache -> cache.getStats().entries()).register(registry);
+        FunctionCounter.builder("fastfile.cache.requests", chunkCache, cache -> cache.getStats().hits())
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("fastfile.cache.requests", chunkCache, cache -> cache.getStats().misses())
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("fastfile.cache.evictions", chunkCache, cache -> cache.getStats().evictions()).register(registry);
+    }
+
+    public void recordStage(Mode mode, Stage stage, long nanos) {
+        stages[mode.ordinal()][stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record a finished upload. {@code uniqueBytes} is what was left after dedup, {@code storedBytes}
+     * what was written once compressed; raw uploads have no dedup, so both are passed the same way.
+     */
+    public void recordUpload(Mode mode, long bytes, long uniqueBytes, long storedBytes,
+                             long chunks, long newChunks, long nanos) {
+        uploads[mode.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+        ingestedBytes[mode.ordinal()].increment(bytes);
+        this.storedBytes[mode.ordinal()].increment(storedBytes);
+        if (mode == Mode.CHUNKED) {
+            this.uniqueBytes.increment(uniqueBytes);
+            ingestedChunks.increment(chunks);
+            this.newChunks.increment(newChunks);
+        }
+    }
+
+    public void recordDownload(Mode mode, long bytes, long nanos) {
+        downloads[mode.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+        downloadedBytes[mode.ordinal()].increment(bytes);
+    }
+
+    private double compressionRatio(Mode mode) {
+        Counter before = mode == Mode.CHUNKED ? uniqueBytes : ingestedBytes[mode.ordinal()];
+        return ratio(before, storedBytes[mode.ordinal()]);
+    }
+
+    private static double ratio(Counter numerator, Counter denominator) {
+        double value = denominator.count();
+        return value == 0 ? Double.NaN : numerator.count() / value;
+    }
+
+    private static String tag(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
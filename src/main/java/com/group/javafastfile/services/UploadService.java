@@ -0,0 +1,337 @@
+package com.group.javafastfile.services;
+
+import com.group.javafastfile.chunking.Chunker;
+import com.group.javafastfile.repositories.ChunkRecord;
+import com.group.javafastfile.repositories.FileManifest;
+import com.group.javafastfile.repositories.FileRepository;
+import com.group.javafastfile.repositories.ManifestEntry;
+import com.group.javafastfile.repositories.ManifestRepository;
+import com.group.javafastfile.storage.Fingerprinter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Chunk-level uploads: the client sends the ordered fingerprints of a file, uploads only the
+ * chunks the server is missing, then commits the manifest. Chunk uploads are idempotent and may
+ * run in parallel, so an interrupted upload resumes by asking for the remaining chunks.
+ */
+@Service
+public class UploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadService.class);
+
+    public record ChunkRef(String fingerprint, int size) {
+    }
+
+    public record UploadRequest(String filename, String chunker, List<ChunkRef> chunks) {
+    }
+
+    public record UploadStatus(String uploadId, String filename, int chunkCount, List<String> missing) {
+    }
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private ManifestRepository manifestRepository;
+
+    @Autowired
+    private Fingerprinter fingerprinter;
+
+    @Autowired
+    private Chunker chunker;
+
+    @Autowired
+    private StorageMetrics metrics;
+
+    @Autowired
+    private ChunkCollector chunkCollector;
+
+    @Value("${fastfile.upload.max-chunk-size:4MB}")
+    private DataSize maxChunkSize;
+
+    @Value("${fastfile.upload.session-timeout:24h}")
+    private Duration sessionTimeout;
+
+    @Value("${fastfile.upload.purge-interval:5m}")
+    private Duration purgeInterval;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService purgeExecutor;
+
+    /**
+     * Forget abandoned uploads on a schedule, so their pins are released even when no new upload starts.
+     */
+    @PostConstruct
+    void startPurge() {
+        purgeExecutor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("upload-purge-"));
+        purgeExecutor.scheduleWithFixedDelay(this::purgeExpiredSessions,
+                purgeInterval.toMillis(), purgeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopPurge() {
+        purgeExecutor.shutdownNow();
+    }
+
+    /**
+     * Open an upload and return the fingerprints the server does not have yet, in first-use order.
+     */
+    public UploadStatus start(UploadRequest request) {
+        if (request.filename() == null || request.filename().isBlank() || request.chunks() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "filename and chunks are required");
+        }
+        Map<String, Integer> sizes = new HashMap<>();
+        for (ChunkRef chunk : request.chunks()) {
+            if (chunk.fingerprint() == null || !chunk.fingerprint().matches("[0-9a-f]{64}")) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid fingerprint: " + chunk.fingerprint());
+            }
+            if (chunk.size() <= 0 || chunk.size() > maxChunkSize.toBytes()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid size for chunk " + chunk.fingerprint());
+            }
+            Integer previous = sizes.putIfAbsent(chunk.fingerprint(), chunk.size());
+            if (previous != null && previous != chunk.size()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Conflicting sizes for chunk " + chunk.fingerprint());
+            }
+        }
+
+        // The session keeps its chunks pinned until it is committed, aborted or expires
+        ChunkCollector.Pins pins = chunkCollector.pin();
+        Set<String> existing;
+        try {
+            existing = findExisting(sizes.keySet(), pins::findExisting);
+            checkStoredSizes(existing, sizes);
+        } catch (RuntimeException e) {
+            pins.close();
+            throw e;
+        }
+        Set<String> missing = new LinkedHashSet<>();
+        for (ChunkRef chunk : request.chunks()) {
+            if (!existing.contains(chunk.fingerprint())) {
+                missing.add(chunk.fingerprint());
+            }
+        }
+
+        String chunkerName = request.chunker() != null ? request.chunker() : chunker.getName();
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), request.filename(), chunkerName,
+                List.copyOf(request.chunks()), sizes, missing, pins);
+        sessions.put(session.id, session);
+        logger.info("Upload {} of {}: {} chunks, {} missing", session.id, session.filename,
+                request.chunks().size(), missing.size());
+        return session.status();
+    }
+
+    public UploadStatus getStatus(String uploadId) {
+        return session(uploadId).status();
+    }
+
+    /**
+     * Store one chunk of an upload after checking it against its fingerprint. Sending a chunk
+     * the server already has is a no-op, so retries are safe.
+     */
+    public void putChunk(String uploadId, String fingerprint, byte[] data) throws IOException {
+        UploadSession session = session(uploadId);
+        Integer expectedSize = session.sizes.get(fingerprint);
+        if (expectedSize == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Chunk " + fingerprint + " is not part of upload " + uploadId);
+        }
+        if (!session.isMissing(fingerprint)) {
+            return;
+        }
+        byte[] key = fingerprinter.digest(data);
+        if (data.length != expectedSize || !Arrays.equals(key, Fingerprinter.toKey(fingerprint))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk content does not match " + fingerprint);
+        }
+
+        long appendedBytes = session.pins.store(List.of(key), List.of(data));
+        session.received(fingerprint, data.length, appendedBytes);
+    }
+
+    /**
+     * Save the manifest once every chunk is stored, and close the upload. The session is claimed
+     * first, so concurrent commits of the same upload save one version; it is handed back when the
+     * commit fails.
+     */
+    public FileManifest commit(String uploadId) {
+        UploadSession session = sessions.remove(uploadId);
+        if (session == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found: " + uploadId);
+        }
+
+        long manifestStart = System.nanoTime();
+        List<ManifestEntry> entries = new ArrayList<>(session.chunks.size());
+        long offset = 0;
+        FileManifest manifest;
+        try {
+            // Chunks may have been stored by another upload in the meantime. Recheck through the pins, so the
+            // collector cannot delete the ones found here before the manifest referencing them is saved
+            Set<String> missing = new HashSet<>(session.missing());
+            Set<String> storedElsewhere = findExisting(missing, session.pins::findExisting);
+            checkStoredSizes(storedElsewhere, session.sizes);
+            missing.removeAll(storedElsewhere);
+            if (!missing.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, missing.size() + " chunks are still missing");
+            }
+
+            for (ChunkRef chunk : session.chunks) {
+                entries.add(new ManifestEntry(chunk.fingerprint(), offset));
+                offset += chunk.size();
+            }
+            long storedSize;
+            synchronized (session) {
+                storedSize = session.appendedBytes;
+            }
+            manifest = manifestRepository.saveManifest(session.filename, session.chunkerName, offset, storedSize, entries);
+        } catch (RuntimeException e) {
+            session.lastAccess = Instant.now();
+            sessions.put(uploadId, session);
+            throw e;
+        }
+        session.pins.close();
+
+        long endNanos = System.nanoTime();
+        metrics.recordStage(StorageMetrics.Mode.CHUNKED, StorageMetrics.Stage.MANIFEST_SAVE, endNanos - manifestStart);
+        synchronized (session) {
+            metrics.recordUpload(StorageMetrics.Mode.CHUNKED, offset, session.receivedBytes, session.appendedBytes,
+                    entries.size(), session.receivedChunks, endNanos - session.startNanos);
+            logger.info("Upload {} committed {}: {} bytes, {} bytes transferred", uploadId, session.filename,
+                    offset, session.receivedBytes);
+        }
+        return manifest;
+    }
+
+    public void abort(String uploadId) {
+        UploadSession session = sessions.remove(uploadId);
+        if (session == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found: " + uploadId);
+        }
+        session.pins.close();
+    }
+
+    /**
+     * Look up hex fingerprints sent by a client through a lookup that takes raw keys.
+     */
+    private static Set<String> findExisting(Collection<String> fingerprints, Function<List<byte[]>, BitSet> lookup) {
+        List<String> hashes = new ArrayList<>(fingerprints);
+        List<byte[]> keys = new ArrayList<>(hashes.size());
+        for (String hash : hashes) {
+            keys.add(Fingerprinter.toKey(hash));
+        }
+        BitSet found = lookup.apply(keys);
+        Set<String> existing = new HashSet<>();
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            existing.add(hashes.get(i));
+        }
+        return existing;
+    }
+
+    /**
+     * Manifest offsets come from the declared sizes, so a chunk the server already has must have
+     * been declared with the size it was stored with.
+     */
+    private void checkStoredSizes(Set<String> existing, Map<String, Integer> sizes) {
+        for (ChunkRecord chunk : fileRepository.findChunks(existing).values()) {
+            if (chunk.originalSize() != sizes.get(chunk.fingerprint())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Declared size of chunk " + chunk.fingerprint()
+                        + " does not match the stored chunk (" + chunk.originalSize() + " bytes)");
+            }
+        }
+    }
+
+    private UploadSession session(String uploadId) {
+        UploadSession session = sessions.get(uploadId);
+        if (session == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found: " + uploadId);
+        }
+        session.lastAccess = Instant.now();
+        return session;
+    }
+
+    private void purgeExpiredSessions() {
+        Instant cutoff = Instant.now().minus(sessionTimeout);
+        sessions.values().removeIf(session -> {
+            if (!session.lastAccess.isBefore(cutoff)) {
+                return false;
+            }
+            // Chunks received by an abandoned upload become garbage
+            session.pins.close();
+            return true;
+        });
+    }
+
+    private static final class UploadSession {
+        private final String id;
+        private final String filename;
+        private final String chunkerName;
+        private final List<ChunkRef> chunks;
+        private final Map<String, Integer> sizes;
+        private final Set<String> missing;
+        private final ChunkCollector.Pins pins;
+        private final long startNanos = System.nanoTime();
+        private volatile Instant lastAccess = Instant.now();
+        private long receivedBytes;
+        private long appendedBytes;
+        private int receivedChunks;
+
+        UploadSession(String id, String filename, String chunkerName, List<ChunkRef> chunks,
+                      Map<String, Integer> sizes, Set<String> missing, ChunkCollector.Pins pins) {
+            this.id = id;
+            this.filename = filename;
+            this.chunkerName = chunkerName;
+            this.chunks = chunks;
+            this.sizes = sizes;
+            this.missing = missing;
+            this.pins = pins;
+        }
+
+        synchronized boolean isMissing(String fingerprint) {
+            return missing.contains(fingerprint);
+        }
+
+        synchronized void received(String fingerprint, int size, long appended) {
+            if (missing.remove(fingerprint)) {
+                receivedBytes += size;
+                appendedBytes += appended;
+                receivedChunks++;
+            }
+        }
+
+        synchronized List<String> missing() {
+            return new ArrayList<>(missing);
+        }
+
+        UploadStatus status() {
+            return new UploadStatus(id, filename, chunks.size(), missing());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.group.javafastfile.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Layout of block-indexed LZ4 frames, used for raw uploads.
+ * <pre>
+ * header  magic:int version:byte blockSize:int
+ * blocks  independently encoded blocks, see {@link Codec}
+ * index   per block: offset:long compressedSize:int originalSize:int codec:byte
+ *         (version 1 has no codec byte: blocks are LZ4 fast, or stored as is when both sizes match)
+ * footer  indexOffset:long blockCount:int originalSize:long magic:int
+ * </pre>
+ * Every block decodes on its own, so a byte range only touches the blocks it overlaps.
+ */
+public final class BlockFrame {
+
+    static final int MAGIC = 0x46464C5A; // "FFLZ"
+    static final byte VERSION = 2;
+    static final int HEADER_SIZE = 4 + 1 + 4;
+    static final int INDEX_ENTRY_SIZE = 8 + 4 + 4 + 1;
+    static final int INDEX_ENTRY_SIZE_V1 = 8 + 4 + 4;
+    static final int FOOTER_SIZE = 8 + 4 + 8 + 4;
+
+    private BlockFrame() {
+    }
+
+    /**
+     * Returns true when the file starts with a frame header, as opposed to the former single LZ4 block.
+     */
+    public static boolean isFrame(Path path) throws IOException {
+        if (Files.size(path) < HEADER_SIZE + FOOTER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            return header.getInt(0) == MAGIC && header.get(4) >= 1 && header.get(4) <= VERSION;
+        }
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of frame at " + position);
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
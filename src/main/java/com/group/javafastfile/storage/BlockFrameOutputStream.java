@@ -0,0 +1,117 @@
+package com.group.javafastfile.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a {@link BlockFrame} with constant memory: one input block and one compressed block
+ * are buffered, plus the block index, which is appended on {@link #close()}.
+ */
+public class BlockFrameOutputStream extends OutputStream {
+
+    private final DataOutputStream out;
+    private final CompressionPolicy compressionPolicy;
+    private final byte[] block;
+    private final byte[] compressed;
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private final DataOutputStream indexOut = new DataOutputStream(index);
+
+    private int blockLength;
+    private int blockCount;
+    private long originalSize;
+    private long position;
+    private boolean closed;
+
+    public BlockFrameOutputStream(OutputStream out, CompressionPolicy compressionPolicy, int blockSize) throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.out = new DataOutputStream(out);
+        this.compressionPolicy = compressionPolicy;
+        this.block = new byte[blockSize];
+        this.compressed = new byte[Codec.maxEncodedLength(blockSize)];
+
+        this.out.writeInt(BlockFrame.MAGIC);
+        this.out.writeByte(BlockFrame.VERSION);
+        this.out.writeInt(blockSize);
+        position = BlockFrame.HEADER_SIZE;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[blockLength++] = (byte) b;
+        if (blockLength == block.length) {
+            flushBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = Math.min(length, block.length - blockLength);
+            System.arraycopy(data, offset, block, blockLength, n);
+            blockLength += n;
+            offset += n;
+            length -= n;
+            if (blockLength == block.length) {
+                flushBlock();
+            }
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        CompressionPolicy.Encoded encoded = compressionPolicy.encode(block, 0, blockLength, compressed, 0);
+        int compressedLength = encoded.length();
+        out.write(compressed, 0, compressedLength);
+
+        indexOut.writeLong(position);
+        indexOut.writeInt(compressedLength);
+        indexOut.writeInt(blockLength);
+        indexOut.writeByte(encoded.codec().getId());
+        position += compressedLength;
+        originalSize += blockLength;
+        blockCount++;
+        blockLength = 0;
+    }
+
+    public long getOriginalSize() {
+        return originalSize + blockLength;
+    }
+
+    /**
+     * Bytes written so far, including header, index and footer once closed.
+     */
+    public long getCompressedSize() {
+        return position;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (blockLength > 0) {
+                flushBlock();
+            }
+            long indexOffset = position;
+            index.writeTo(out);
+            out.writeLong(indexOffset);
+            out.writeInt(blockCount);
+            out.writeLong(originalSize);
+            out.writeInt(BlockFrame.MAGIC);
+            position += index.size() + BlockFrame.FOOTER_SIZE;
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+}
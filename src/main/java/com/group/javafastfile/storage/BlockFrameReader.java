@@ -0,0 +1,130 @@
+package com.group.javafastfile.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access over a {@link BlockFrame}. Only the index is kept in memory,
+ * blocks are read and decoded one at a time with positional reads.
+ */
+public class BlockFrameReader implements Closeable {
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final long originalSize;
+    private final long[] offsets;
+    private final int[] compressedSizes;
+    private final int[] originalSizes;
+    private final Codec[] codecs;
+
+    private byte[] compressed;
+    private byte[] block;
+    private long decodeNanos;
+
+    public BlockFrameReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(BlockFrame.HEADER_SIZE);
+            BlockFrame.readFully(channel, header, 0);
+            ByteBuffer footer = ByteBuffer.allocate(BlockFrame.FOOTER_SIZE);
+            BlockFrame.readFully(channel, footer, channel.size() - BlockFrame.FOOTER_SIZE);
+            int magic = header.getInt();
+            byte version = header.get();
+            if (magic != BlockFrame.MAGIC || version < 1 || version > BlockFrame.VERSION
+                    || footer.getInt(BlockFrame.FOOTER_SIZE - 4) != BlockFrame.MAGIC) {
+                throw new IOException("Not a block frame: " + path);
+            }
+            blockSize = header.getInt();
+            long indexOffset = footer.getLong();
+            int blockCount = footer.getInt();
+            originalSize = footer.getLong();
+
+            offsets = new long[blockCount];
+            compressedSizes = new int[blockCount];
+            originalSizes = new int[blockCount];
+            codecs = new Codec[blockCount];
+            int entrySize = version == 1 ? BlockFrame.INDEX_ENTRY_SIZE_V1 : BlockFrame.INDEX_ENTRY_SIZE;
+            ByteBuffer index = ByteBuffer.allocate(blockCount * entrySize);
+            BlockFrame.readFully(channel, index, indexOffset);
+            for (int i = 0; i < blockCount; i++) {
+                offsets[i] = index.getLong();
+                compressedSizes[i] = index.getInt();
+                originalSizes[i] = index.getInt();
+                if (version == 1) {
+                    codecs[i] = compressedSizes[i] == originalSizes[i] ? Codec.NONE : Codec.LZ4_FAST;
+                } else {
+                    codecs[i] = Codec.fromId(index.get());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getOriginalSize() {
+        return originalSize;
+    }
+
+    public int getBlockCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Decode one block. The returned array is reused by the next call, only the first
+     * {@code originalSize} bytes of the block are valid.
+     */
+    public byte[] readBlock(int blockIndex) throws IOException {
+        int compressedSize = compressedSizes[blockIndex];
+        int size = originalSizes[blockIndex];
+        if (block == null) {
+            block = new byte[blockSize];
+        }
+        if (codecs[blockIndex] == Codec.NONE) {
+            BlockFrame.readFully(channel, ByteBuffer.wrap(block, 0, size), offsets[blockIndex]);
+            return block;
+        }
+        if (compressed == null || compressed.length < compressedSize) {
+            compressed = new byte[compressedSize];
+        }
+        BlockFrame.readFully(channel, ByteBuffer.wrap(compressed, 0, compressedSize), offsets[blockIndex]);
+        codecs[blockIndex].decode(compressed, 0, block, 0, size);
+        return block;
+    }
+
+    /**
+     * Write bytes {@code [start, start + length)} of the original data, decoding only the blocks they cover.
+     */
+    public void transferTo(long start, long length, OutputStream out) throws IOException {
+        long end = start + length;
+        if (start < 0 || length < 0 || end > originalSize) {
+            throw new IllegalArgumentException("Range " + start + "+" + length + " outside of " + originalSize + " bytes");
+        }
+        for (int i = (int) (start / blockSize); i < offsets.length && (long) i * blockSize < end; i++) {
+            long blockStart = (long) i * blockSize;
+            int from = (int) Math.max(0, start - blockStart);
+            int until = (int) Math.min(originalSizes[i], end - blockStart);
+            long decodeStart = System.nanoTime();
+            byte[] data = readBlock(i);
+            decodeNanos += System.nanoTime() - decodeStart;
+            out.write(data, from, until - from);
+        }
+    }
+
+    /**
+     * Time spent reading and decoding blocks in {@link #transferTo}, as opposed to writing them out.
+     */
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
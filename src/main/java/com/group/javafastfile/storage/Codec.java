@@ -0,0 +1,75 @@
+package com.group.javafastfile.storage;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * How a chunk or raw block is encoded on disk. The id is persisted next to the data,
+ * so decoding never depends on the policy that was active when it was written.
+ */
+public enum Codec {
+
+    NONE(0, null),
+    LZ4_FAST(1, LZ4Factory.fastestInstance().fastCompressor()),
+    LZ4_HC(2, LZ4Factory.fastestInstance().highCompressor());
+
+    // Both LZ4 variants produce the same block format, so one decompressor reads them all
+    private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    private final int id;
+    private final LZ4Compressor compressor;
+
+    Codec(int id, LZ4Compressor compressor) {
+        this.id = id;
+        this.compressor = compressor;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public static Codec fromId(int id) {
+        for (Codec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown codec id: " + id);
+    }
+
+    public static int maxEncodedLength(int length) {
+        return LZ4_FAST.compressor.maxCompressedLength(length);
+    }
+
+    /**
+     * Encode {@code length} bytes into {@code dest}, which must hold {@link #maxEncodedLength(int)} bytes.
+     *
+     * @return the encoded length
+     */
+    public int encode(byte[] src, int offset, int length, byte[] dest, int destOffset) {
+        if (compressor == null) {
+            System.arraycopy(src, offset, dest, destOffset, length);
+            return length;
+        }
+        return compressor.compress(src, offset, length, dest, destOffset, dest.length - destOffset);
+    }
+
+    public void decode(byte[] src, int offset, byte[] dest, int destOffset, int originalSize) {
+        if (compressor == null) {
+            System.arraycopy(src, offset, dest, destOffset, originalSize);
+        } else {
+            DECOMPRESSOR.decompress(src, offset, dest, destOffset, originalSize);
+        }
+    }
+
+    public void decode(ByteBuffer src, int offset, ByteBuffer dest, int destOffset, int originalSize) {
+        if (compressor == null) {
+            dest.put(destOffset, src, offset, originalSize);
+        } else {
+            DECOMPRESSOR.decompress(src, offset, dest, destOffset, originalSize);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.group.javafastfile.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the codec for each chunk or raw block. In adaptive mode a byte-entropy probe over a
+ * sample of the data decides: near-random data (media, archives) is stored as is, highly
+ * redundant data gets LZ4 HC, everything else LZ4 fast.
+ */
+@Component
+public class CompressionPolicy {
+
+    private static final int SAMPLE_SIZE = 4096;
+    private static final int SAMPLE_SLICES = 16;
+
+    @Value("${fastfile.compression.policy:adaptive}")
+    private String policy;
+
+    @Value("${fastfile.compression.raw-entropy:7.5}")
+    private double rawEntropy;
+
+    @Value("${fastfile.compression.hc-entropy:5.0}")
+    private double hcEntropy;
+
+    public Codec select(byte[] data, int offset, int length) {
+        return switch (policy) {
+            case "none" -> Codec.NONE;
+            case "fast" -> Codec.LZ4_FAST;
+            case "hc" -> Codec.LZ4_HC;
+            case "adaptive" -> {
+                double entropy = entropy(data, offset, length);
+                yield entropy >= rawEntropy ? Codec.NONE : entropy < hcEntropy ? Codec.LZ4_HC : Codec.LZ4_FAST;
+            }
+            default -> throw new IllegalStateException("Unknown compression policy: " + policy);
+        };
+    }
+
+    /**
+     * Encode with the selected codec into {@code dest}, which must hold {@link Codec#maxEncodedLength(int)} bytes.
+     * Data that does not shrink is kept as is.
+     */
+    public Encoded encode(byte[] src, int offset, int length, byte[] dest, int destOffset) {
+        Codec codec = select(src, offset, length);
+        if (codec != Codec.NONE) {
+            int encoded = codec.encode(src, offset, length, dest, destOffset);
+            if (encoded < length) {
+                return new Encoded(codec, encoded);
+            }
+        }
+        return new Encoded(Codec.NONE, Codec.NONE.encode(src, offset, length, dest, destOffset));
+    }
+
+    public record Encoded(Codec codec, int length) {
+    }
+
+    /**
+     * Shannon entropy in bits per byte, estimated from evenly spaced slices of at most {@value #SAMPLE_SIZE} bytes.
+     */
+    static double entropy(byte[] data, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int[] counts = new int[256];
+        int sampled;
+        if (length <= SAMPLE_SIZE) {
+            for (int i = offset; i < offset + length; i++) {
+                counts[data[i] & 0xFF]++;
+            }
+            sampled = length;
+        } else {
+            int sliceSize = SAMPLE_SIZE / SAMPLE_SLICES;
+            long stride = (length - sliceSize) / (SAMPLE_SLICES - 1);
+            for (int slice = 0; slice < SAMPLE_SLICES; slice++) {
+                int start = offset + (int) (slice * stride);
+                for (int i = start; i < start + sliceSize; i++) {
+                    counts[data[i] & 0xFF]++;
+                }
+            }
+            sampled = SAMPLE_SIZE;
+        }
+
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / sampled;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+}
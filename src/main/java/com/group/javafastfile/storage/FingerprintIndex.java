@@ -0,0 +1,299 @@
+package com.group.javafastfile.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Open-addressing hash table of chunk fingerprints kept in off-heap memory.
+ * <p>
+ * Keys are raw 32-byte SHA-256 digests. Each slot holds the key, the original size, the codec and
+ * the pack location of the chunk in a fixed {@value #SLOT_SIZE} bytes, so memory use is
+ * {@code capacity * SLOT_SIZE} whatever the number of entries and creates no garbage.
+ * Collisions are resolved by linear probing; removals use backward-shift deletion so no
+ * tombstones accumulate.
+ */
+public class FingerprintIndex {
+
+    public static final int KEY_SIZE = 32;
+
+    private static final int SLOT_SIZE = 56;
+    private static final int OFFSET_FIELD = 32;
+    private static final int PACK_ID_FIELD = 40;
+    private static final int ORIGINAL_SIZE_FIELD = 44;
+    private static final int COMPRESSED_SIZE_FIELD = 48;
+    private static final int FLAGS_FIELD = 52;
+
+    private static final int FLAG_OCCUPIED = 1;
+    private static final int CODEC_SHIFT = 8;
+    private static final int NO_PACK = -1;
+
+    private static final int PAGE_SHIFT = 20;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private ByteBuffer[] pages;
+    private long capacity;
+    private long mask;
+    private long size;
+
+    public FingerprintIndex(long expectedEntries) {
+        allocate(tableSizeFor((long) (Math.max(expectedEntries, 16) / MAX_LOAD_FACTOR)));
+    }
+
+    public record Entry(int originalSize, PackLocation location, Codec codec) {
+
+        public Entry(int originalSize, PackLocation location) {
+            this(originalSize, location, Codec.LZ4_FAST);
+        }
+    }
+
+    public Entry get(byte[] key) {
+        lock.readLock().lock();
+        try {
+            long slot = findSlot(key);
+            return isOccupied(slot) ? readEntry(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(byte[] key) {
+        lock.readLock().lock();
+        try {
+            return isOccupied(findSlot(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Insert an entry unless the key is already present.
+     *
+     * @return {@code true} if the entry was inserted
+     */
+    public boolean putIfAbsent(byte[] key, Entry entry) {
+        lock.writeLock().lock();
+        try {
+            long slot = findSlot(key);
+            if (isOccupied(slot)) {
+                return false;
+            }
+            if (size + 1 > capacity * MAX_LOAD_FACTOR) {
+                resize(capacity * 2);
+                slot = findSlot(key);
+            }
+            writeSlot(slot, key, entry);
+            size++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Overwrite the entry of a key that is already present, e.g. after its chunk was moved.
+     *
+     * @return {@code true} if the key was present
+     */
+    public boolean replace(byte[] key, Entry entry) {
+        lock.writeLock().lock();
+        try {
+            long slot = findSlot(key);
+            if (!isOccupied(slot)) {
+                return false;
+            }
+            writeSlot(slot, key, entry);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @return {@code true} if the key was present
+     */
+    public boolean remove(byte[] key) {
+        lock.writeLock().lock();
+        try {
+            long slot = findSlot(key);
+            if (!isOccupied(slot)) {
+                return false;
+            }
+            // Shift the following entries of the probe run back so lookups never hit a gap
+            long hole = slot;
+            long next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (!isOccupied(next)) {
+                    break;
+                }
+                long home = page(next).getLong(base(next)) & mask;
+                boolean reachable = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+                if (!reachable) {
+                    copySlot(next, hole);
+                    hole = next;
+                }
+            }
+            clearSlot(hole);
+            size--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Off-heap memory reserved by the table.
+     */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return capacity * SLOT_SIZE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long findSlot(byte[] key) {
+        checkKey(key);
+        long k0 = keyWord(key, 0);
+        long k1 = keyWord(key, 1);
+        long k2 = keyWord(key, 2);
+        long k3 = keyWord(key, 3);
+        // SHA-256 output is uniformly distributed, so its first word is a good enough hash
+        long slot = k0 & mask;
+        while (true) {
+            ByteBuffer page = page(slot);
+            int base = base(slot);
+            if ((page.getInt(base + FLAGS_FIELD) & FLAG_OCCUPIED) == 0
+                    || (page.getLong(base) == k0 && page.getLong(base + 8) == k1
+                    && page.getLong(base + 16) == k2 && page.getLong(base + 24) == k3)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean isOccupied(long slot) {
+        return (page(slot).getInt(base(slot) + FLAGS_FIELD) & FLAG_OCCUPIED) != 0;
+    }
+
+    private Entry readEntry(long slot) {
+        ByteBuffer page = page(slot);
+        int base = base(slot);
+        int packId = page.getInt(base + PACK_ID_FIELD);
+        PackLocation location = packId == NO_PACK ? null
+                : new PackLocation(packId, page.getLong(base + OFFSET_FIELD), page.getInt(base + COMPRESSED_SIZE_FIELD));
+        Codec codec = Codec.fromId(page.getInt(base + FLAGS_FIELD) >>> CODEC_SHIFT);
+        return new Entry(page.getInt(base + ORIGINAL_SIZE_FIELD), location, codec);
+    }
+
+    private void writeSlot(long slot, byte[] key, Entry entry) {
+        ByteBuffer page = page(slot);
+        int base = base(slot);
+        for (int i = 0; i < 4; i++) {
+            page.putLong(base + i * 8, keyWord(key, i));
+        }
+        PackLocation location = entry.location();
+        page.putLong(base + OFFSET_FIELD, location == null ? 0 : location.offset());
+        page.putInt(base + PACK_ID_FIELD, location == null ? NO_PACK : location.packId());
+        page.putInt(base + ORIGINAL_SIZE_FIELD, entry.originalSize());
+        page.putInt(base + COMPRESSED_SIZE_FIELD, location == null ? 0 : location.length());
+        page.putInt(base + FLAGS_FIELD, FLAG_OCCUPIED | entry.codec().getId() << CODEC_SHIFT);
+    }
+
+    private void copySlot(long from, long to) {
+        ByteBuffer source = page(from);
+        ByteBuffer target = page(to);
+        int sourceBase = base(from);
+        int targetBase = base(to);
+        for (int i = 0; i < SLOT_SIZE; i += 4) {
+            target.putInt(targetBase + i, source.getInt(sourceBase + i));
+        }
+    }
+
+    private void clearSlot(long slot) {
+        ByteBuffer page = page(slot);
+        int base = base(slot);
+        for (int i = 0; i < SLOT_SIZE; i += 4) {
+            page.putInt(base + i, 0);
+        }
+    }
+
+    private void resize(long newCapacity) {
+        ByteBuffer[] oldPages = pages;
+        long oldCapacity = capacity;
+        allocate(newCapacity);
+
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            ByteBuffer oldPage = oldPages[(int) (slot >>> PAGE_SHIFT)];
+            int oldBase = (int) ((slot & ((1L << PAGE_SHIFT) - 1)) * SLOT_SIZE);
+            if ((oldPage.getInt(oldBase + FLAGS_FIELD) & FLAG_OCCUPIED) == 0) {
+                continue;
+            }
+            long target = oldPage.getLong(oldBase) & mask;
+            while (isOccupied(target)) {
+                target = (target + 1) & mask;
+            }
+            ByteBuffer page = page(target);
+            int base = base(target);
+            for (int i = 0; i < SLOT_SIZE; i += 4) {
+                page.putInt(base + i, oldPage.getInt(oldBase + i));
+            }
+        }
+    }
+
+    private void allocate(long newCapacity) {
+        long slotsPerPage = Math.min(newCapacity, 1L << PAGE_SHIFT);
+        ByteBuffer[] newPages = new ByteBuffer[(int) (newCapacity / slotsPerPage)];
+        for (int i = 0; i < newPages.length; i++) {
+            newPages[i] = ByteBuffer.allocateDirect((int) (slotsPerPage * SLOT_SIZE)).order(ByteOrder.nativeOrder());
+        }
+        pages = newPages;
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+    }
+
+    private ByteBuffer page(long slot) {
+        return pages[(int) (slot >>> PAGE_SHIFT)];
+    }
+
+    private static int base(long slot) {
+        return (int) ((slot & ((1L << PAGE_SHIFT) - 1)) * SLOT_SIZE);
+    }
+
+    private static long keyWord(byte[] key, int word) {
+        long value = 0;
+        for (int i = word * 8; i < word * 8 + 8; i++) {
+            value = (value << 8) | (key[i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void checkKey(byte[] key) {
+        if (key.length != KEY_SIZE) {
+            throw new IllegalArgumentException("Fingerprints must be " + KEY_SIZE + " bytes, got " + key.length);
+        }
+    }
+
+    private static long tableSizeFor(long minimum) {
+        long capacity = 16;
+        while (capacity < minimum) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
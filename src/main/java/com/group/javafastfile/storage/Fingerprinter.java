@@ -0,0 +1,81 @@
+package com.group.javafastfile.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * SHA-256 fingerprints of chunks, as raw {@value FingerprintIndex#KEY_SIZE}-byte keys or lowercase hex.
+ * <p>
+ * Digests are reused per thread. Ingest works on the raw keys, which the fingerprint index and pins
+ * take as they are; hex, encoded through {@link HexFormat}'s lookup table, is only produced for
+ * manifests and database rows. A batch can first be screened by a {@link PreHash} so repeated chunks
+ * reuse the digest of their first occurrence.
+ */
+@Component
+public class Fingerprinter {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Hashing algorithm not found", e);
+        }
+    });
+
+    private final PreHash preHash;
+
+    public Fingerprinter(@Value("${fastfile.fingerprint.prehash:none}") String preHash) {
+        this.preHash = PreHash.fromName(preHash);
+    }
+
+    public static String toHex(byte[] key) {
+        return HEX.formatHex(key);
+    }
+
+    public static byte[] toKey(String fingerprint) {
+        return HEX.parseHex(fingerprint);
+    }
+
+    public byte[] digest(byte[] data) {
+        return SHA256.get().digest(data);
+    }
+
+    /**
+     * Digest the remaining bytes of a buffer, heap or direct, without copying them out first.
+     */
+    public byte[] digest(ByteBuffer data) {
+        MessageDigest digest = SHA256.get();
+        digest.update(data);
+        return digest.digest();
+    }
+
+    public String fingerprint(byte[] data) {
+        return HEX.formatHex(digest(data));
+    }
+
+    public String fingerprint(ByteBuffer data) {
+        return HEX.formatHex(digest(data));
+    }
+
+    /**
+     * Digest a batch of chunks, in order. Chunks the pre-hash finds repeated share the key array
+     * of their first occurrence.
+     */
+    public List<byte[]> digestAll(List<byte[]> chunks) {
+        int[] repeats = preHash.findRepeats(chunks);
+        List<byte[]> keys = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            keys.add(repeats[i] >= 0 ? keys.get(repeats[i]) : digest(chunks.get(i)));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,7 @@
+package com.group.javafastfile.storage;
+
+/**
+ * Position of a stored record inside a pack segment.
+ */
+public record PackLocation(int packId, long offset, int length) {
+}
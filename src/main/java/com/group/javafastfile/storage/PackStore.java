@@ -0,0 +1,208 @@
+package com.group.javafastfile.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only segment files holding compressed chunks back to back. Segments roll over
+ * once they reach the configured size and are read through memory-mapped regions.
+ */
+@Component
+public class PackStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PackStore.class);
+
+    public static final String PACK_DIR = "chunks/packs/";
+    private static final String PACK_PREFIX = "pack-";
+    private static final String PACK_SUFFIX = ".pack";
+
+    @Value("${fastfile.pack.segment-size:256MB}")
+    private DataSize segmentSize;
+
+    @Value("${fastfile.storage.root:.}")
+    private Path storageRoot;
+
+    private final Map<Integer, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+    private final Map<Integer, Instant> retired = new ConcurrentHashMap<>();
+
+    private FileChannel activeChannel;
+    private int activePackId;
+    private long activeSize;
+
+    @PostConstruct
+    void open() throws IOException {
+        if (segmentSize.toBytes() <= 0 || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Pack segment size must be between 1 byte and 2GB");
+        }
+        Path packDir = storageRoot.resolve(PACK_DIR);
+        Files.createDirectories(packDir);
+
+        int lastPackId = listPackIds().stream().mapToInt(Integer::intValue).max().orElse(1);
+        openSegment(lastPackId);
+        logger.info("Appending chunks to pack {} at offset {}", activePackId, activeSize);
+    }
+
+    @PreDestroy
+    synchronized void close() throws IOException {
+        if (activeChannel.isOpen()) {
+            activeChannel.force(false);
+            activeChannel.close();
+        }
+    }
+
+    /**
+     * Append a record to the active segment, rolling over to a new one when it is full.
+     */
+    public synchronized PackLocation append(byte[] data, int offset, int length) throws IOException {
+        reopenIfClosed();
+        if (activeSize > 0 && activeSize + length > segmentSize.toBytes()) {
+            activeChannel.force(false);
+            activeChannel.close();
+            openSegment(activePackId + 1);
+        }
+
+        long position = activeSize;
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        while (buffer.hasRemaining()) {
+            activeChannel.write(buffer, position + buffer.position() - offset);
+        }
+        activeSize += length;
+        return new PackLocation(activePackId, position, length);
+    }
+
+    /**
+     * Flush the active segment to disk, so records appended so far survive a crash.
+     * Segments that rolled over were flushed when they were sealed.
+     */
+    public synchronized void force() throws IOException {
+        reopenIfClosed();
+        activeChannel.force(false);
+    }
+
+    /**
+     * Returns a mapped buffer covering the given record. The buffer is shared, so callers
+     * must use absolute offsets between {@code location.offset()} and its end.
+     */
+    public ByteBuffer map(PackLocation location) throws IOException {
+        long end = location.offset() + location.length();
+        MappedByteBuffer mapping = mappings.get(location.packId());
+        if (mapping == null || mapping.capacity() < end) {
+            mapping = remap(location.packId(), end);
+        }
+        return mapping;
+    }
+
+    /**
+     * Ids of the segments that are no longer appended to.
+     */
+    public List<Integer> listSealedPackIds() throws IOException {
+        int active = getActivePackId();
+        return listPackIds().stream().filter(packId -> packId != active && !retired.containsKey(packId)).sorted().toList();
+    }
+
+    public synchronized int getActivePackId() {
+        return activePackId;
+    }
+
+    public long packSize(int packId) throws IOException {
+        return Files.size(packPath(packId));
+    }
+
+    /**
+     * Delete a sealed segment whose records have all been moved. The active segment holding the
+     * copies is flushed first, so a crash never leaves the only copy of a record in the page cache.
+     * The mapping is kept for the given grace period, so reads that resolved a location before the
+     * move still complete.
+     */
+    public void retire(int packId) throws IOException {
+        if (packId == getActivePackId()) {
+            throw new IllegalArgumentException("Cannot retire the active pack " + packId);
+        }
+        remap(packId, packSize(packId));
+        force();
+        retired.put(packId, Instant.now());
+        Files.delete(packPath(packId));
+    }
+
+    /**
+     * Drop the mappings of segments retired longer ago than the grace period.
+     */
+    public void releaseRetired(Duration grace) {
+        Instant cutoff = Instant.now().minus(grace);
+        retired.entrySet().removeIf(entry -> {
+            if (entry.getValue().isAfter(cutoff)) {
+                return false;
+            }
+            mappings.remove(entry.getKey());
+            return true;
+        });
+    }
+
+    private List<Integer> listPackIds() throws IOException {
+        try (Stream<Path> packs = Files.list(storageRoot.resolve(PACK_DIR))) {
+            return packs.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PACK_PREFIX) && name.endsWith(PACK_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(PACK_PREFIX.length(), name.length() - PACK_SUFFIX.length())))
+                    .toList();
+        }
+    }
+
+    private synchronized MappedByteBuffer remap(int packId, long requiredSize) throws IOException {
+        MappedByteBuffer mapping = mappings.get(packId);
+        if (mapping != null && mapping.capacity() >= requiredSize) {
+            return mapping;
+        }
+        // The active segment keeps growing, so it gets remapped whenever a read goes past the last mapping
+        try (FileChannel channel = FileChannel.open(packPath(packId), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < requiredSize) {
+                throw new IOException("Pack " + packId + " is shorter than expected: " + size + " < " + requiredSize);
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        mappings.put(packId, mapping);
+        return mapping;
+    }
+
+    /**
+     * Interrupting a thread while it writes closes the active channel. Reopen it in place rather than
+     * failing every later append; whatever a failed write left past {@code activeSize} is overwritten.
+     */
+    private void reopenIfClosed() throws IOException {
+        if (activeChannel.isOpen()) {
+            return;
+        }
+        logger.warn("Pack {} channel was closed, reopening it at offset {}", activePackId, activeSize);
+        activeChannel = FileChannel.open(packPath(activePackId), StandardOpenOption.WRITE);
+    }
+
+    private void openSegment(int packId) throws IOException {
+        activeChannel = FileChannel.open(packPath(packId),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activePackId = packId;
+        activeSize = activeChannel.size();
+    }
+
+    private Path packPath(int packId) {
+        return storageRoot.resolve(PACK_DIR).resolve(String.format("%s%06d%s", PACK_PREFIX, packId, PACK_SUFFIX));
+    }
+}
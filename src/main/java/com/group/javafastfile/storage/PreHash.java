@@ -0,0 +1,47 @@
+package com.group.javafastfile.storage;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cheap screen run over a batch of chunks before they are fingerprinted. Chunks it finds to
+ * repeat an earlier chunk of the same batch reuse that chunk's SHA-256 instead of digesting again.
+ * <p>
+ * Only repeats within a batch are found: chunks already stored are still digested and looked up
+ * by their SHA-256, so a pre-hash pays off only for batches with many repeated chunks, such as
+ * sparse or zero-filled files.
+ */
+public interface PreHash {
+
+    /**
+     * Digests every chunk.
+     */
+    PreHash NONE = new PreHash() {
+        @Override
+        public String getName() {
+            return "none";
+        }
+
+        @Override
+        public int[] findRepeats(List<byte[]> chunks) {
+            int[] repeats = new int[chunks.size()];
+            Arrays.fill(repeats, -1);
+            return repeats;
+        }
+    };
+
+    String getName();
+
+    /**
+     * Returns, for each chunk, the index of an earlier chunk of the batch with the same bytes, or -1.
+     */
+    int[] findRepeats(List<byte[]> chunks);
+
+    static PreHash fromName(String name) {
+        return switch (name) {
+            case "none" -> NONE;
+            case "xxh64" -> new XxHash64PreHash();
+            default -> throw new IllegalArgumentException("Unknown pre-hash: " + name);
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package com.group.javafastfile.storage;
+
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Screens a batch by xxHash64, then confirms each candidate byte for byte, so a hash collision
+ * never makes two different chunks share a fingerprint.
+ */
+public class XxHash64PreHash implements PreHash {
+
+    private static final XXHash64 XXHASH = XXHashFactory.fastestInstance().hash64();
+    private static final long XXHASH_SEED = 0x9747b28cL;
+
+    @Override
+    public String getName() {
+        return "xxh64";
+    }
+
+    @Override
+    public int[] findRepeats(List<byte[]> chunks) {
+        int[] repeats = new int[chunks.size()];
+        // xxHash64 -> index of the first chunk with that hash in this batch
+        Map<Long, Integer> seen = new HashMap<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            byte[] chunk = chunks.get(i);
+            Integer candidate = seen.putIfAbsent(XXHASH.hash(chunk, 0, chunk.length, XXHASH_SEED), i);
+            repeats[i] = candidate != null && Arrays.equals(chunks.get(candidate), chunk) ? candidate : -1;
+        }
+        return repeats;
+    }
+}
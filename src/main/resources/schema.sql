@@ -2,3 +2,44 @@ CREATE TABLE IF NOT EXISTS chunk_fingerprints (
     fingerprint VARCHAR(64) PRIMARY KEY,
     original_size INT NOT NULL
 );
+
+-- Location of the compressed chunk in its pack segment, NULL for chunks stored as loose files
+ALTER TABLE chunk_fingerprints ADD COLUMN IF NOT EXISTS pack_id INT;
+ALTER TABLE chunk_fingerprints ADD COLUMN IF NOT EXISTS pack_offset BIGINT;
+ALTER TABLE chunk_fingerprints ADD COLUMN IF NOT EXISTS compressed_size INT;
+
+CREATE TABLE IF NOT EXISTS files (
+    id BIGSERIAL PRIMARY KEY,
+    filename VARCHAR(1024) NOT NULL,
+    chunker VARCHAR(128) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+ALTER TABLE files ADD COLUMN IF NOT EXISTS original_size BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE files ADD COLUMN IF NOT EXISTS chunk_count INT NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS file_chunks (
+    file_id BIGINT NOT NULL REFERENCES files (id) ON DELETE CASCADE,
+    seq INT NOT NULL,
+    fingerprint VARCHAR(64) NOT NULL,
+    PRIMARY KEY (file_id, seq)
+);
+
+-- Offset of each chunk in the original file, so byte ranges map straight to the chunks they need
+ALTER TABLE file_chunks ADD COLUMN IF NOT EXISTS chunk_offset BIGINT;
+CREATE INDEX IF NOT EXISTS file_chunks_offset ON file_chunks (file_id, chunk_offset);
+
+-- Codec the chunk was stored with (0 = none, 1 = LZ4 fast, 2 = LZ4 HC), see storage.Codec
+ALTER TABLE chunk_fingerprints ADD COLUMN IF NOT EXISTS codec SMALLINT NOT NULL DEFAULT 1;
+
+-- Lets the chunk collector check whether any manifest still references a chunk
+CREATE INDEX IF NOT EXISTS file_chunks_fingerprint ON file_chunks (fingerprint);
+
+-- Bytes the upload of a file added to the pack store, for listings
+ALTER TABLE files ADD COLUMN IF NOT EXISTS stored_size BIGINT NOT NULL DEFAULT 0;
+
+-- Every upload of a name is a new version; older versions share chunks through chunk_fingerprints
+ALTER TABLE files ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 1;
+-- Only Postgres databases created before versions existed still have the old unique filename constraint
+ALTER TABLE files DROP CONSTRAINT IF EXISTS files_filename_key;
+CREATE UNIQUE INDEX IF NOT EXISTS files_filename_version ON files (filename, version);
@@ -0,0 +1,60 @@
+package com.group.javafastfile.archive;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TarArchiveWriterTests {
+
+    @Test
+    void writesPaddedEntriesWithValidChecksums() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarArchiveWriter tar = new TarArchiveWriter(out);
+        tar.beginEntry("a.txt", 3, Instant.EPOCH);
+        tar.entryStream().write("abc".getBytes(StandardCharsets.US_ASCII));
+        tar.closeEntry();
+        tar.finish();
+
+        byte[] archive = out.toByteArray();
+        assertEquals(4 * 512, archive.length);
+        assertEquals("a.txt", new String(archive, 0, 5, StandardCharsets.US_ASCII));
+        assertEquals(3, Long.parseLong(new String(archive, 124, 11, StandardCharsets.US_ASCII), 8));
+        assertEquals("abc", new String(archive, 512, 3, StandardCharsets.US_ASCII));
+
+        long checksum = 0;
+        for (int i = 0; i < 512; i++) {
+            checksum += i >= 148 && i < 156 ? ' ' : archive[i] & 0xff;
+        }
+        assertEquals(checksum, Long.parseLong(new String(archive, 148, 6, StandardCharsets.US_ASCII), 8));
+    }
+
+    @Test
+    void carriesLongNamesInPaxHeaders() throws IOException {
+        String name = "dir/" + "x".repeat(150);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarArchiveWriter tar = new TarArchiveWriter(out);
+        tar.beginEntry(name, 0, Instant.EPOCH);
+        tar.closeEntry();
+        tar.finish();
+
+        byte[] archive = out.toByteArray();
+        assertEquals('x', archive[156]);
+        String record = "164 path=" + name + "\n";
+        assertEquals(164, record.length());
+        assertEquals(record, new String(archive, 512, record.length(), StandardCharsets.UTF_8));
+        assertEquals('0', archive[1024 + 156]);
+    }
+
+    @Test
+    void rejectsEntriesOfTheWrongSize() throws IOException {
+        TarArchiveWriter tar = new TarArchiveWriter(new ByteArrayOutputStream());
+        tar.beginEntry("a.txt", 3, Instant.EPOCH);
+        tar.entryStream().write(1);
+        assertThrows(IOException.class, tar::closeEntry);
+    }
+}
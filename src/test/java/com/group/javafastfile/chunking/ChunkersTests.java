@@ -0,0 +1,24 @@
+package com.group.javafastfile.chunking;
+
+import org.junit.jupiter.api.Test;
+import org.rabinfingerprint.polynomial.Polynomial;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkersTests {
+
+    @Test
+    void rebuildsChunkersFromTheirNames() {
+        Chunker fastCdc = new FastCdcChunker(2048, 8192, 65536, 2);
+        Chunker rabin = new RabinChunker(Polynomial.createFromLong(0x3026bf10e7c1e3L), 2048, 8192);
+
+        assertEquals(fastCdc.getName(), Chunkers.fromName(fastCdc.getName()).getName());
+        assertEquals(rabin.getName(), Chunkers.fromName(rabin.getName()).getName());
+    }
+
+    @Test
+    void rejectsUnknownNames() {
+        assertThrows(IllegalArgumentException.class, () -> Chunkers.fromName("rabin(poly=random)"));
+        assertThrows(IllegalArgumentException.class, () -> Chunkers.fromName("gear(size=1)"));
+    }
+}
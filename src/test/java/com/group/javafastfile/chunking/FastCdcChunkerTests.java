@@ -0,0 +1,89 @@
+package com.group.javafastfile.chunking;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastCdcChunkerTests {
+
+    private final FastCdcChunker chunker = new FastCdcChunker(2048, 8192, 65536, 2);
+
+    @Test
+    void chunksRespectSizeBoundsAndReassemble() throws IOException {
+        byte[] data = randomData(4 * 1024 * 1024, 42);
+        List<byte[]> chunks = chunk(data);
+
+        ByteArrayOutputStream reassembled = new ByteArrayOutputStream();
+        for (int i = 0; i < chunks.size(); i++) {
+            byte[] chunk = chunks.get(i);
+            assertTrue(chunk.length <= 65536);
+            if (i < chunks.size() - 1) {
+                assertTrue(chunk.length >= 2048);
+            }
+            reassembled.write(chunk);
+        }
+        assertArrayEquals(data, reassembled.toByteArray());
+
+        double averageSize = (double) data.length / chunks.size();
+        assertTrue(averageSize > 4096 && averageSize < 16384, "Average chunk size " + averageSize);
+    }
+
+    @Test
+    void uniformDataIsCutAtMaxSize() throws IOException {
+        List<byte[]> chunks = chunk(new byte[200_000]);
+        assertEquals(65536, chunks.get(0).length);
+        assertEquals(4, chunks.size());
+    }
+
+    @Test
+    void insertionOnlyDisturbsNearbyChunks() throws IOException {
+        byte[] original = randomData(2 * 1024 * 1024, 7);
+        byte[] shifted = new byte[original.length + 100];
+        System.arraycopy(randomData(100, 8), 0, shifted, 0, 100);
+        System.arraycopy(original, 0, shifted, 100, original.length);
+
+        Set<String> originalChunks = new HashSet<>();
+        for (byte[] chunk : chunk(original)) {
+            originalChunks.add(new String(chunk, java.nio.charset.StandardCharsets.ISO_8859_1));
+        }
+        List<byte[]> shiftedChunks = chunk(shifted);
+        int shared = 0;
+        for (byte[] chunk : shiftedChunks) {
+            if (originalChunks.contains(new String(chunk, java.nio.charset.StandardCharsets.ISO_8859_1))) {
+                shared++;
+            }
+        }
+        assertTrue(shared >= shiftedChunks.size() - 2, shared + " of " + shiftedChunks.size() + " chunks shared");
+    }
+
+    @Test
+    void rejectsInconsistentSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new FastCdcChunker(8192, 8192, 65536, 2));
+        assertThrows(IllegalArgumentException.class, () -> new FastCdcChunker(2048, 8192, 4096, 2));
+    }
+
+    private List<byte[]> chunk(byte[] data) throws IOException {
+        ChunkReader reader = chunker.open(new ByteArrayInputStream(data));
+        List<byte[]> chunks = new ArrayList<>();
+        byte[] chunk;
+        while ((chunk = reader.next()) != null) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static byte[] randomData(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
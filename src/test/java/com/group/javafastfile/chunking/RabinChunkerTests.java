@@ -0,0 +1,80 @@
+package com.group.javafastfile.chunking;
+
+import org.junit.jupiter.api.Test;
+import org.rabinfingerprint.polynomial.Polynomial;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RabinChunkerTests {
+
+    private final RabinChunker chunker = new RabinChunker(Polynomial.createIrreducible(53), 2048, 8192);
+
+    @Test
+    void chunksReassembleToInput() throws IOException {
+        byte[] data = randomData(1024 * 1024);
+        ChunkReader reader = chunker.open(new ByteArrayInputStream(data));
+
+        ByteArrayOutputStream reassembled = new ByteArrayOutputStream();
+        byte[] chunk;
+        while ((chunk = reader.next()) != null) {
+            assertTrue(chunk.length > 0);
+            assertTrue(chunk.length <= 8193);
+            reassembled.write(chunk);
+        }
+
+        assertArrayEquals(data, reassembled.toByteArray());
+        assertEquals(data.length, reader.getBytesRead());
+    }
+
+    @Test
+    void boundariesDoNotDependOnReadSizes() throws IOException {
+        byte[] data = randomData(512 * 1024);
+        ChunkReader bulk = chunker.open(new ByteArrayInputStream(data));
+        ChunkReader trickle = chunker.open(new TrickleInputStream(data));
+
+        byte[] expected;
+        while ((expected = bulk.next()) != null) {
+            assertArrayEquals(expected, trickle.next());
+        }
+        assertNull(trickle.next());
+    }
+
+    @Test
+    void emptyStreamHasNoChunks() throws IOException {
+        ChunkReader reader = chunker.open(new ByteArrayInputStream(new byte[0]));
+        assertNull(reader.next());
+    }
+
+    private static byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Returns at most a few bytes per read call, to exercise the buffer refills.
+     */
+    private static class TrickleInputStream extends InputStream {
+        private final ByteArrayInputStream delegate;
+
+        TrickleInputStream(byte[] data) {
+            this.delegate = new ByteArrayInputStream(data);
+        }
+
+        @Override
+        public int read() {
+            return delegate.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return delegate.read(b, off, Math.min(len, 7));
+        }
+    }
+}
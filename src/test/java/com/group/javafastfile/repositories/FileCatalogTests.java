@@ -0,0 +1,107 @@
+package com.group.javafastfile.repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileCatalogTests {
+
+    @Test
+    void pagesThroughEveryFileOnce() {
+        FileCatalog catalog = new FileCatalog();
+        for (int i = 0; i < 1000; i++) {
+            catalog.put(FileInfo.of(String.format("file-%04d", i), i % 7, 0, 1, Instant.ofEpochSecond(i % 13)));
+        }
+
+        for (FileCatalog.Sort sort : FileCatalog.Sort.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                List<String> seen = new ArrayList<>();
+                String cursor = null;
+                do {
+                    FileCatalog.Page page = catalog.list(null, sort, descending, cursor, 64);
+                    page.files().forEach(file -> seen.add(file.filename()));
+                    cursor = page.nextCursor();
+                } while (cursor != null);
+                assertEquals(1000, seen.size(), sort + (descending ? " desc" : " asc"));
+                assertEquals(1000, seen.stream().distinct().count());
+            }
+        }
+    }
+
+    @Test
+    void filtersByPrefix() {
+        FileCatalog catalog = new FileCatalog();
+        for (String name : List.of("a/1", "b/1", "b/2", "b/3", "c/1")) {
+            catalog.put(FileInfo.of(name, 10, 5, 1, Instant.EPOCH));
+        }
+
+        FileCatalog.Page first = catalog.list("b/", FileCatalog.Sort.NAME, false, null, 2);
+        assertEquals(List.of("b/1", "b/2"), first.files().stream().map(FileInfo::filename).toList());
+        FileCatalog.Page second = catalog.list("b/", FileCatalog.Sort.NAME, false, first.nextCursor(), 2);
+        assertEquals(List.of("b/3"), second.files().stream().map(FileInfo::filename).toList());
+        assertNull(second.nextCursor());
+
+        assertEquals(3, catalog.list("b/", FileCatalog.Sort.SIZE, true, null, 10).files().size());
+    }
+
+    @Test
+    void filtersByPrefixInEveryOrder() {
+        FileCatalog catalog = new FileCatalog();
+        for (String name : List.of("a/1", "b", "b/1", "b/2", "b/3", "b0", "c/1")) {
+            catalog.put(FileInfo.of(name, name.hashCode() % 5, 0, 1, Instant.ofEpochSecond(name.length())));
+        }
+
+        FileCatalog.Page first = catalog.list("b/", FileCatalog.Sort.NAME, true, null, 2);
+        assertEquals(List.of("b/3", "b/2"), first.files().stream().map(FileInfo::filename).toList());
+        FileCatalog.Page second = catalog.list("b/", FileCatalog.Sort.NAME, true, first.nextCursor(), 2);
+        assertEquals(List.of("b/1"), second.files().stream().map(FileInfo::filename).toList());
+        assertNull(second.nextCursor());
+
+        for (FileCatalog.Sort sort : FileCatalog.Sort.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                List<String> seen = new ArrayList<>();
+                String cursor = null;
+                do {
+                    FileCatalog.Page page = catalog.list("b/", sort, descending, cursor, 1);
+                    page.files().forEach(file -> seen.add(file.filename()));
+                    cursor = page.nextCursor();
+                } while (cursor != null);
+                assertEquals(List.of("b/1", "b/2", "b/3"), seen.stream().sorted().toList(),
+                        sort + (descending ? " desc" : " asc"));
+            }
+        }
+    }
+
+    @Test
+    void unknownStoredSizeHasNoSavedRatio() {
+        FileInfo info = FileInfo.of("legacy", 100, FileManifest.UNKNOWN_STORED_SIZE, 3, Instant.EPOCH);
+
+        assertNull(info.savedRatio());
+        assertEquals(0.0, FileInfo.of("empty", 0, 0, 0, Instant.EPOCH).savedRatio());
+    }
+
+    @Test
+    void keepsTheLatestUploadOfAFile() {
+        FileCatalog catalog = new FileCatalog();
+        catalog.put(FileInfo.of("a", 10, 10, 1, Instant.ofEpochSecond(2)));
+        catalog.put(FileInfo.of("a", 20, 5, 2, Instant.ofEpochSecond(1)));
+        assertEquals(10, catalog.get("a").originalSize());
+
+        catalog.put(FileInfo.of("a", 30, 15, 3, Instant.ofEpochSecond(3)));
+        assertEquals(0.5, catalog.get("a").savedRatio());
+        assertEquals(1, catalog.list(null, FileCatalog.Sort.SIZE, false, null, 10).files().size());
+
+        catalog.remove("a");
+        assertTrue(catalog.list(null, FileCatalog.Sort.DATE, false, null, 10).files().isEmpty());
+    }
+
+    @Test
+    void rejectsCursorsItDidNotIssue() {
+        FileCatalog catalog = new FileCatalog();
+        assertThrows(IllegalArgumentException.class, () -> catalog.list(null, FileCatalog.Sort.SIZE, false, "not a cursor", 10));
+    }
+}
@@ -0,0 +1,92 @@
+package com.group.javafastfile.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkCacheTests {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    @Test
+    void coldScanDoesNotFlushHotChunks() {
+        ChunkCache cache = cache("slru", 100 * CHUNK_SIZE);
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot-" + i, new byte[CHUNK_SIZE]);
+            assertNotNull(cache.get("hot-" + i));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("cold-" + i, new byte[CHUNK_SIZE]);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertNotNull(cache.get("hot-" + i), "hot-" + i + " was evicted");
+        }
+        assertTrue(cache.getStats().sizeBytes() <= 100 * CHUNK_SIZE);
+    }
+
+    @Test
+    void lruPolicyEvictsLeastRecentlyUsed() {
+        ChunkCache cache = cache("lru", 3 * CHUNK_SIZE);
+        cache.put("a", new byte[CHUNK_SIZE]);
+        cache.put("b", new byte[CHUNK_SIZE]);
+        cache.put("c", new byte[CHUNK_SIZE]);
+        cache.get("a");
+        cache.put("d", new byte[CHUNK_SIZE]);
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getStats().evictions());
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        ChunkCache cache = cache("slru", 10 * CHUNK_SIZE);
+        cache.put("a", new byte[CHUNK_SIZE]);
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+
+        ChunkCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.entries());
+    }
+
+    @Test
+    void admitsChunksOnTheirSecondMiss() {
+        ChunkCache cache = cache("lru", 2 * CHUNK_SIZE);
+        assertFalse(cache.admit("a"));
+        assertTrue(cache.admit("a"));
+        assertFalse(cache.admit("b"));
+
+        cache.put("a", new byte[CHUNK_SIZE]);
+        cache.put("c", new byte[CHUNK_SIZE]);
+        cache.put("d", new byte[CHUNK_SIZE]);
+        // Evicted from probation, so remembered and readmitted on its next miss
+        assertNull(cache.get("a"));
+        assertTrue(cache.admit("a"));
+    }
+
+    @Test
+    void disabledCacheStoresNothing() {
+        ChunkCache cache = cache("slru", 0);
+        cache.put("a", new byte[CHUNK_SIZE]);
+        assertNull(cache.get("a"));
+        assertFalse(cache.admit("a"));
+        assertFalse(cache.admit("a"));
+        assertFalse(cache.isEnabled());
+    }
+
+    private static ChunkCache cache(String policy, long maxBytes) {
+        ChunkCache cache = new ChunkCache();
+        ReflectionTestUtils.setField(cache, "maxSize", DataSize.ofBytes(maxBytes));
+        ReflectionTestUtils.setField(cache, "policy", policy);
+        ReflectionTestUtils.setField(cache, "protectedRatio", 0.8);
+        cache.configure();
+        return cache;
+    }
+}
@@ -0,0 +1,234 @@
+package com.group.javafastfile.services;
+
+import com.group.javafastfile.repositories.ChunkRecord;
+import com.group.javafastfile.repositories.FileRepository;
+import com.group.javafastfile.storage.Codec;
+import com.group.javafastfile.storage.CompressionPolicy;
+import com.group.javafastfile.storage.Fingerprinter;
+import com.group.javafastfile.storage.PackLocation;
+import com.group.javafastfile.storage.PackStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the collector against the real repository and pack store, on an in-memory H2 database in
+ * PostgreSQL mode. Manifests are stood in for by rows in {@code file_chunks}, which is all the
+ * collector reads.
+ */
+class ChunkCollectorTests {
+
+    // Three 20KB chunks fill a pack, the fourth rolls over to the next one
+    private static final int CHUNK_SIZE = 20 * 1024;
+
+    @TempDir
+    Path storageRoot;
+
+    private AnnotationConfigApplicationContext context;
+    private ChunkCollector collector;
+    private FileRepository fileRepository;
+    private JdbcTemplate jdbcTemplate;
+    private final Fingerprinter fingerprinter = new Fingerprinter("none");
+    private final Random random = new Random(17);
+
+    @BeforeEach
+    void start() {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+                "fastfile.storage.root", storageRoot.toString(),
+                "fastfile.pack.segment-size", "64KB",
+                "fastfile.index.expected-chunks", "1000",
+                "fastfile.gc.enabled", "false",
+                "fastfile.gc.max-bytes-per-second", "0",
+                "test.database", UUID.randomUUID().toString())));
+        context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        context.register(Wiring.class);
+        context.refresh();
+
+        collector = context.getBean(ChunkCollector.class);
+        fileRepository = context.getBean(FileRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @AfterEach
+    void stop() {
+        context.close();
+    }
+
+    @Test
+    void pinnedChunkSurvivesSweep() throws Exception {
+        byte[] chunk = chunk();
+        try (ChunkCollector.Pins pins = collector.pin()) {
+            store(pins, chunk);
+
+            collector.collect();
+
+            assertTrue(isStored(chunk));
+            assertEquals(1, countRows());
+        }
+    }
+
+    @Test
+    void unpinnedUnreferencedChunkIsDeletedFromTableIndexAndDisk() throws Exception {
+        byte[] loose = chunk();
+        String looseFingerprint = fingerprinter.fingerprint(loose);
+        Path looseFile = Files.write(Files.createDirectories(storageRoot.resolve(FileRepository.CHUNK_DIR))
+                .resolve(looseFingerprint), loose);
+        jdbcTemplate.update("INSERT INTO chunk_fingerprints (fingerprint, original_size, codec) VALUES (?, ?, 0)",
+                looseFingerprint, loose.length);
+
+        List<byte[]> packed = List.of(chunk(), chunk(), chunk(), chunk());
+        try (ChunkCollector.Pins pins = collector.pin()) {
+            for (byte[] chunk : packed) {
+                store(pins, chunk);
+            }
+        }
+        assertTrue(Files.exists(packPath(1)));
+
+        collector.collect();
+
+        assertEquals(0, countRows());
+        assertFalse(isStored(loose));
+        for (byte[] chunk : packed) {
+            assertFalse(isStored(chunk));
+        }
+        assertFalse(Files.exists(looseFile));
+        // Nothing in the sealed pack was live, so it is gone; the active one is kept
+        assertFalse(Files.exists(packPath(1)));
+        assertTrue(Files.exists(packPath(2)));
+    }
+
+    @Test
+    void sparsePackIsCompactedAndReadsStayCorrect() throws Exception {
+        byte[] live = chunk();
+        try (ChunkCollector.Pins pins = collector.pin()) {
+            store(pins, live);
+            store(pins, chunk());
+            store(pins, chunk());
+            store(pins, chunk());
+        }
+        String fingerprint = fingerprinter.fingerprint(live);
+        reference("live.bin", fingerprint);
+        assertEquals(1, locate(fingerprint).location().packId());
+
+        collector.collect();
+
+        assertEquals(1, collector.getStats().compactedPacks());
+        assertFalse(Files.exists(packPath(1)));
+        ChunkRecord moved = locate(fingerprint);
+        assertEquals(2, moved.location().packId());
+        assertEquals(moved.location(), fileRepository.findChunks(List.of(fingerprint)).get(fingerprint).location());
+        assertArrayEquals(live, read(moved));
+        assertEquals(1, countRows());
+    }
+
+    @Test
+    void closingOnePinLeavesChunksPinnedByAnotherUpload() throws Exception {
+        byte[] chunk = chunk();
+        ChunkCollector.Pins first = collector.pin();
+        ChunkCollector.Pins second = collector.pin();
+        store(first, chunk);
+        assertTrue(second.findExisting(List.of(fingerprinter.digest(chunk))).get(0));
+
+        first.close();
+        collector.collect();
+        assertTrue(isStored(chunk));
+
+        second.close();
+        collector.collect();
+        assertFalse(isStored(chunk));
+    }
+
+    private byte[] chunk() {
+        // Random bytes are stored uncompressed, which keeps pack sizes predictable
+        byte[] chunk = new byte[CHUNK_SIZE];
+        random.nextBytes(chunk);
+        return chunk;
+    }
+
+    private void store(ChunkCollector.Pins pins, byte[] chunk) throws Exception {
+        pins.store(List.of(fingerprinter.digest(chunk)), List.of(chunk));
+    }
+
+    private boolean isStored(byte[] chunk) {
+        return fileRepository.findExistingFingerprints(List.of(fingerprinter.digest(chunk))).get(0);
+    }
+
+    private int countRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chunk_fingerprints", Integer.class);
+    }
+
+    private void reference(String filename, String fingerprint) {
+        jdbcTemplate.update("INSERT INTO files (filename, chunker) VALUES (?, 'test')", filename);
+        Long fileId = jdbcTemplate.queryForObject("SELECT id FROM files WHERE filename = ?", Long.class, filename);
+        jdbcTemplate.update("INSERT INTO file_chunks (file_id, seq, fingerprint, chunk_offset) VALUES (?, 0, ?, 0)",
+                fileId, fingerprint);
+    }
+
+    private ChunkRecord locate(String fingerprint) {
+        return jdbcTemplate.queryForObject(
+                "SELECT pack_id, pack_offset, compressed_size, original_size, codec FROM chunk_fingerprints WHERE fingerprint = ?",
+                (rs, rowNum) -> new ChunkRecord(fingerprint, rs.getInt("original_size"),
+                        new PackLocation(rs.getInt("pack_id"), rs.getLong("pack_offset"), rs.getInt("compressed_size")),
+                        Codec.fromId(rs.getInt("codec"))),
+                fingerprint);
+    }
+
+    private byte[] read(ChunkRecord chunk) throws Exception {
+        ByteBuffer decoded = fileRepository.readChunk(chunk, ByteBuffer.allocate(chunk.originalSize()));
+        byte[] data = new byte[decoded.remaining()];
+        decoded.get(data);
+        return data;
+    }
+
+    private Path packPath(int packId) {
+        return storageRoot.resolve(PackStore.PACK_DIR).resolve(String.format("pack-%06d.pack", packId));
+    }
+
+    @Configuration
+    @Import({CompressionPolicy.class, PackStore.class, FileRepository.class, ChunkCollector.class})
+    static class Wiring {
+
+        @Bean
+        static PropertySourcesPlaceholderConfigurer placeholderConfigurer() {
+            return new PropertySourcesPlaceholderConfigurer();
+        }
+
+        @Bean
+        DataSource dataSource(Environment environment) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                    "jdbc:h2:mem:" + environment.getProperty("test.database") + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+            new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+            return dataSource;
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+    }
+}
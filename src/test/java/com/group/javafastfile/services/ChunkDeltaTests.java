@@ -0,0 +1,46 @@
+package com.group.javafastfile.services;
+
+import com.group.javafastfile.repositories.ManifestEntry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkDeltaTests {
+
+    @Test
+    void mergesUnchangedRunsAndFetchesNewChunks() {
+        // Version 1: a b c d, version 2: a b X c d d, every chunk 10 bytes
+        List<ManifestEntry> source = entries("a", "b", "c", "d");
+        List<ManifestEntry> target = entries("a", "b", "x", "c", "d", "d");
+
+        ChunkDelta delta = ChunkDelta.between("f", 1, source, 40, 2, target, 60);
+
+        assertEquals(List.of(
+                new ChunkDelta.Copy(0, 0, 20),
+                new ChunkDelta.Copy(20, 30, 20),
+                new ChunkDelta.Copy(30, 50, 10)), delta.copies());
+        assertEquals(List.of(new ChunkDelta.Fetch("x", 20, 10)), delta.fetches());
+        assertEquals(50, delta.copyBytes());
+        assertEquals(10, delta.fetchBytes());
+    }
+
+    @Test
+    void countsRepeatedNewChunksOnce() {
+        ChunkDelta delta = ChunkDelta.between("f", 1, entries("a"), 10, 2, entries("x", "x"), 20);
+
+        assertTrue(delta.copies().isEmpty());
+        assertEquals(2, delta.fetches().size());
+        assertEquals(10, delta.fetchBytes());
+    }
+
+    private static List<ManifestEntry> entries(String... fingerprints) {
+        List<ManifestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < fingerprints.length; i++) {
+            entries.add(new ManifestEntry(fingerprints[i], i * 10L));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,170 @@
+package com.group.javafastfile.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestJobServiceTests {
+
+    @TempDir
+    Path storageRoot;
+
+    private final GatedFileService fileService = new GatedFileService();
+    private IngestJobService jobService;
+
+    @BeforeEach
+    void start() throws IOException {
+        jobService = new IngestJobService();
+        ReflectionTestUtils.setField(jobService, "fileService", fileService);
+        ReflectionTestUtils.setField(jobService, "workers", 1);
+        ReflectionTestUtils.setField(jobService, "queueCapacity", 1);
+        ReflectionTestUtils.setField(jobService, "retention", Duration.ofHours(1));
+        ReflectionTestUtils.setField(jobService, "retryAfter", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(jobService, "storageRoot", storageRoot);
+        ReflectionTestUtils.invokeMethod(jobService, "startJobWorkers");
+    }
+
+    @AfterEach
+    void stop() {
+        fileService.releaseAll();
+        ReflectionTestUtils.invokeMethod(jobService, "stopJobWorkers");
+    }
+
+    @Test
+    void refusesUploadsWithRetryAfterOnceTheQueueIsFull() throws Exception {
+        IngestJobService.JobStatus running = jobService.submit(upload("a.bin"));
+        fileService.awaitStarted("a.bin");
+        jobService.submit(upload("b.bin"));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> jobService.submit(upload("c.bin")));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals("10", e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(2, spoolFiles());
+
+        fileService.release("a.bin");
+        awaitState(running.jobId(), IngestJobService.State.DONE);
+    }
+
+    @Test
+    void jobsGoFromQueuedThroughRunningToDone() throws Exception {
+        String first = jobService.submit(upload("a.bin")).jobId();
+        fileService.awaitStarted("a.bin");
+        String second = jobService.submit(upload("b.bin")).jobId();
+
+        assertEquals(IngestJobService.State.RUNNING, jobService.getStatus(first).state());
+        assertEquals(IngestJobService.State.QUEUED, jobService.getStatus(second).state());
+        assertNull(jobService.getStatus(first).finishedAt());
+
+        fileService.release("a.bin");
+        IngestJobService.JobStatus done = awaitState(first, IngestJobService.State.DONE);
+        assertEquals(5, done.processedBytes());
+        assertNotNull(done.finishedAt());
+
+        fileService.awaitStarted("b.bin");
+        assertEquals(IngestJobService.State.RUNNING, jobService.getStatus(second).state());
+        fileService.release("b.bin");
+        awaitState(second, IngestJobService.State.DONE);
+        assertEquals(0, spoolFiles());
+    }
+
+    @Test
+    void failedJobReportsItsErrorAndDeletesItsSpoolFile() throws Exception {
+        String jobId = jobService.submit(upload("broken.bin")).jobId();
+        fileService.awaitStarted("broken.bin");
+        assertEquals(1, spoolFiles());
+
+        fileService.release("broken.bin");
+        IngestJobService.JobStatus failed = awaitState(jobId, IngestJobService.State.FAILED);
+
+        assertEquals("Could not ingest broken.bin", failed.error());
+        assertNotNull(failed.finishedAt());
+        assertEquals(0, spoolFiles());
+    }
+
+    private static MockMultipartFile upload(String filename) {
+        return new MockMultipartFile("file", filename, "application/octet-stream",
+                "hello".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private long spoolFiles() throws IOException {
+        try (Stream<Path> files = Files.list(storageRoot.resolve(IngestJobService.SPOOL_DIR))) {
+            return files.count();
+        }
+    }
+
+    private IngestJobService.JobStatus awaitState(String jobId, IngestJobService.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        IngestJobService.JobStatus status = jobService.getStatus(jobId);
+        while (status.state() != state) {
+            if (System.nanoTime() > deadline) {
+                fail("Job " + jobId + " is " + status.state() + ", expected " + state);
+            }
+            Thread.sleep(10);
+            status = jobService.getStatus(jobId);
+        }
+        return status;
+    }
+
+    /**
+     * Ingests only once a test lets the given file through, and fails files named "broken".
+     */
+    private static final class GatedFileService extends FileService {
+
+        private final Map<String, CountDownLatch> started = new ConcurrentHashMap<>();
+        private final Map<String, CountDownLatch> released = new ConcurrentHashMap<>();
+
+        @Override
+        public IngestStats ingest(String filename, InputStream in, Consumer<IngestStats> progress) throws IOException {
+            latch(started, filename).countDown();
+            try {
+                latch(released, filename).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while ingesting " + filename, e);
+            }
+            byte[] data = in.readAllBytes();
+            if (filename.startsWith("broken")) {
+                throw new IOException("Could not ingest " + filename);
+            }
+            return new IngestStats(data.length, 1, 1, data.length);
+        }
+
+        void awaitStarted(String filename) throws InterruptedException {
+            assertTrue(latch(started, filename).await(10, TimeUnit.SECONDS), filename + " never started");
+        }
+
+        void release(String filename) {
+            latch(released, filename).countDown();
+        }
+
+        void releaseAll() {
+            released.values().forEach(CountDownLatch::countDown);
+        }
+
+        private static CountDownLatch latch(Map<String, CountDownLatch> latches, String filename) {
+            return latches.computeIfAbsent(filename, name -> new CountDownLatch(1));
+        }
+    }
+}
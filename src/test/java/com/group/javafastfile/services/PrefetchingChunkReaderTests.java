@@ -0,0 +1,80 @@
+package com.group.javafastfile.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefetchingChunkReaderTests {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void returnsChunksInOrderWithinTheWindow() throws IOException {
+        List<String> fingerprints = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            fingerprints.add("chunk-" + i);
+        }
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger consumed = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+
+        try (PrefetchingChunkReader reader = new PrefetchingChunkReader(fingerprints, (fingerprint, slot) -> {
+            maxAhead.accumulateAndGet(started.incrementAndGet() - consumed.get(), Math::max);
+            if (fingerprint.hashCode() % 3 == 0) {
+                Thread.yield();
+            }
+            byte[] content = fingerprint.getBytes(StandardCharsets.US_ASCII);
+            return slot.reserve(content.length).put(content).flip();
+        }, executor, 8)) {
+            for (String fingerprint : fingerprints) {
+                ByteBuffer chunk = reader.next();
+                assertEquals(fingerprint, StandardCharsets.US_ASCII.decode(chunk).toString());
+                consumed.incrementAndGet();
+            }
+            assertFalse(reader.hasNext());
+        }
+        assertTrue(maxAhead.get() <= 8, "read " + maxAhead.get() + " chunks ahead");
+    }
+
+    @Test
+    void rethrowsReadFailuresInOrder() throws IOException {
+        try (PrefetchingChunkReader reader = new PrefetchingChunkReader(List.of("a", "b", "bad", "c"), (fingerprint, slot) -> {
+            if (fingerprint.equals("bad")) {
+                throw new IOException("Missing chunk bad");
+            }
+            return slot.reserve(1).put((byte) fingerprint.charAt(0)).flip();
+        }, executor, 4)) {
+            assertEquals('a', reader.next().get(0));
+            assertEquals('b', reader.next().get(0));
+            IOException e = assertThrows(IOException.class, reader::next);
+            assertEquals("Missing chunk bad", e.getMessage());
+        }
+    }
+
+    @Test
+    void readsOnTheCallingThreadWithoutReadAhead() throws IOException {
+        Thread caller = Thread.currentThread();
+        try (PrefetchingChunkReader reader = new PrefetchingChunkReader(List.of("a", "b"), (fingerprint, slot) -> {
+            assertSame(caller, Thread.currentThread());
+            return slot.reserve(0);
+        }, executor, 1)) {
+            reader.next();
+            reader.next();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.group.javafastfile.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockFrameTests {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void roundTripsAcrossBlocks() throws IOException {
+        byte[] data = text(10 * BLOCK_SIZE + 123);
+        Path file = write("text.bin", data);
+
+        assertTrue(BlockFrame.isFrame(file));
+        try (BlockFrameReader reader = new BlockFrameReader(file)) {
+            assertEquals(data.length, reader.getOriginalSize());
+            assertEquals(11, reader.getBlockCount());
+            assertArrayEquals(data, read(reader, 0, data.length));
+        }
+        assertTrue(Files.size(file) < data.length);
+    }
+
+    @Test
+    void rangeInsideOneBlockOnlyDecodesThatBlock() throws IOException {
+        byte[] data = text(8 * BLOCK_SIZE);
+        Path file = write("range.bin", data);
+        // Garble the first block: a range in block 3 must not touch it
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            byte[] garbage = new byte[64];
+            Arrays.fill(garbage, (byte) 0xff);
+            channel.write(ByteBuffer.wrap(garbage), BlockFrame.HEADER_SIZE);
+        }
+
+        long start = 3L * BLOCK_SIZE + 100;
+        try (BlockFrameReader reader = new BlockFrameReader(file)) {
+            assertArrayEquals(Arrays.copyOfRange(data, (int) start, (int) start + 1000), read(reader, start, 1000));
+        }
+    }
+
+    @Test
+    void emptyFileIsAFrameWithoutBlocks() throws IOException {
+        Path file = write("empty.bin", new byte[0]);
+
+        assertTrue(BlockFrame.isFrame(file));
+        try (BlockFrameReader reader = new BlockFrameReader(file)) {
+            assertEquals(0, reader.getOriginalSize());
+            assertEquals(0, reader.getBlockCount());
+            assertEquals(0, read(reader, 0, 0).length);
+            assertThrows(IllegalArgumentException.class, () -> reader.transferTo(0, 1, OutputStream.nullOutputStream()));
+        }
+    }
+
+    @Test
+    void incompressibleBlocksAreStoredAsIs() throws IOException {
+        byte[] data = new byte[3 * BLOCK_SIZE + 10];
+        new Random(11).nextBytes(data);
+        Path file = write("random.bin", data);
+
+        try (BlockFrameReader reader = new BlockFrameReader(file)) {
+            assertArrayEquals(data, read(reader, 0, data.length));
+        }
+        long overhead = BlockFrame.HEADER_SIZE + 4L * BlockFrame.INDEX_ENTRY_SIZE + BlockFrame.FOOTER_SIZE;
+        assertEquals(data.length + overhead, Files.size(file));
+    }
+
+    @Test
+    void legacySingleBlockFileIsNotAFrame() throws IOException {
+        Path file = tempDir.resolve("legacy.bin");
+        Files.write(file, text(BLOCK_SIZE));
+
+        assertFalse(BlockFrame.isFrame(file));
+    }
+
+    private Path write(String name, byte[] data) throws IOException {
+        Path file = tempDir.resolve(name);
+        try (BlockFrameOutputStream out = new BlockFrameOutputStream(Files.newOutputStream(file), policy(), BLOCK_SIZE)) {
+            out.write(data);
+            assertEquals(data.length, out.getOriginalSize());
+        }
+        return file;
+    }
+
+    private static byte[] read(BlockFrameReader reader, long start, long length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reader.transferTo(start, length, out);
+        return out.toByteArray();
+    }
+
+    private static CompressionPolicy policy() {
+        CompressionPolicy policy = new CompressionPolicy();
+        ReflectionTestUtils.setField(policy, "policy", "adaptive");
+        ReflectionTestUtils.setField(policy, "rawEntropy", 7.5);
+        ReflectionTestUtils.setField(policy, "hcEntropy", 5.0);
+        return policy;
+    }
+
+    private static byte[] text(int length) {
+        byte[] line = "the quick brown fox jumps over the lazy dog\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] text = new byte[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = line[i % line.length];
+        }
+        return text;
+    }
+}
@@ -0,0 +1,62 @@
+package com.group.javafastfile.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionPolicyTests {
+
+    @Test
+    void entropyTellsNoiseFromRedundantData() {
+        byte[] random = new byte[64 * 1024];
+        new Random(42).nextBytes(random);
+
+        assertEquals(0.0, CompressionPolicy.entropy(new byte[8192], 0, 8192), 1e-9);
+        assertTrue(CompressionPolicy.entropy(random, 0, random.length) > 7.5);
+        assertTrue(CompressionPolicy.entropy(text(8192), 0, 8192) < 5.0);
+    }
+
+    @Test
+    void adaptivePolicyPicksCodecFromEntropy() {
+        CompressionPolicy policy = policy("adaptive");
+        byte[] random = new byte[16 * 1024];
+        new Random(7).nextBytes(random);
+
+        assertEquals(Codec.NONE, policy.select(random, 0, random.length));
+        assertEquals(Codec.LZ4_HC, policy.select(text(16 * 1024), 0, 16 * 1024));
+    }
+
+    @Test
+    void incompressibleDataIsStoredAsIs() {
+        CompressionPolicy policy = policy("fast");
+        byte[] random = new byte[16 * 1024];
+        new Random(3).nextBytes(random);
+        byte[] encoded = new byte[Codec.maxEncodedLength(random.length)];
+
+        CompressionPolicy.Encoded result = policy.encode(random, 0, random.length, encoded, 0);
+
+        assertEquals(Codec.NONE, result.codec());
+        assertEquals(random.length, result.length());
+    }
+
+    private static CompressionPolicy policy(String mode) {
+        CompressionPolicy policy = new CompressionPolicy();
+        ReflectionTestUtils.setField(policy, "policy", mode);
+        ReflectionTestUtils.setField(policy, "rawEntropy", 7.5);
+        ReflectionTestUtils.setField(policy, "hcEntropy", 5.0);
+        return policy;
+    }
+
+    private static byte[] text(int length) {
+        byte[] line = "the quick brown fox jumps over the lazy dog\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] text = new byte[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = line[i % line.length];
+        }
+        return text;
+    }
+}
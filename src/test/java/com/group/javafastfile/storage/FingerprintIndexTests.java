@@ -0,0 +1,94 @@
+package com.group.javafastfile.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FingerprintIndexTests {
+
+    @Test
+    void storesEntriesAcrossResizes() {
+        FingerprintIndex index = new FingerprintIndex(16);
+        List<byte[]> keys = randomKeys(50_000, 1);
+
+        for (int i = 0; i < keys.size(); i++) {
+            assertTrue(index.putIfAbsent(keys.get(i), new FingerprintIndex.Entry(i, new PackLocation(i % 7, i * 100L, i % 4096))));
+        }
+
+        assertEquals(keys.size(), index.size());
+        for (int i = 0; i < keys.size(); i++) {
+            FingerprintIndex.Entry entry = index.get(keys.get(i));
+            assertNotNull(entry);
+            assertEquals(i, entry.originalSize());
+            assertEquals(new PackLocation(i % 7, i * 100L, i % 4096), entry.location());
+        }
+    }
+
+    @Test
+    void keepsFirstEntryForDuplicateKeys() {
+        FingerprintIndex index = new FingerprintIndex(16);
+        byte[] key = randomKeys(1, 2).get(0);
+
+        assertTrue(index.putIfAbsent(key, new FingerprintIndex.Entry(10, null)));
+        assertFalse(index.putIfAbsent(key, new FingerprintIndex.Entry(20, null)));
+
+        assertEquals(10, index.get(key).originalSize());
+        assertNull(index.get(key).location());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void replacesEntriesOfKnownKeysOnly() {
+        FingerprintIndex index = new FingerprintIndex(16);
+        List<byte[]> keys = randomKeys(2, 4);
+        index.putIfAbsent(keys.get(0), new FingerprintIndex.Entry(10, new PackLocation(1, 0, 5)));
+
+        assertTrue(index.replace(keys.get(0), new FingerprintIndex.Entry(10, new PackLocation(2, 64, 5), Codec.LZ4_HC)));
+        assertFalse(index.replace(keys.get(1), new FingerprintIndex.Entry(10, null)));
+
+        assertEquals(new PackLocation(2, 64, 5), index.get(keys.get(0)).location());
+        assertEquals(Codec.LZ4_HC, index.get(keys.get(0)).codec());
+        assertFalse(index.contains(keys.get(1)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void removalKeepsOtherKeysReachable() {
+        FingerprintIndex index = new FingerprintIndex(1_000);
+        List<byte[]> keys = randomKeys(20_000, 3);
+        for (byte[] key : keys) {
+            index.putIfAbsent(key, new FingerprintIndex.Entry(1, null));
+        }
+
+        for (int i = 0; i < keys.size(); i += 2) {
+            assertTrue(index.remove(keys.get(i)));
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i % 2 == 1, index.contains(keys.get(i)));
+        }
+        assertEquals(keys.size() / 2, index.size());
+        assertFalse(index.remove(keys.get(0)));
+    }
+
+    @Test
+    void rejectsKeysOfTheWrongLength() {
+        FingerprintIndex index = new FingerprintIndex(16);
+        assertThrows(IllegalArgumentException.class, () -> index.contains(new byte[16]));
+    }
+
+    private static List<byte[]> randomKeys(int count, long seed) {
+        Random random = new Random(seed);
+        List<byte[]> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[FingerprintIndex.KEY_SIZE];
+            random.nextBytes(key);
+            keys.add(key);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,68 @@
+package com.group.javafastfile.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FingerprinterTests {
+
+    @Test
+    void matchesKnownSha256() {
+        Fingerprinter fingerprinter = fingerprinter("none");
+
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                fingerprinter.fingerprint("abc".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void directBuffersHashLikeArrays() {
+        Fingerprinter fingerprinter = fingerprinter("none");
+        byte[] data = new byte[8192];
+        new Random(1).nextBytes(data);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+
+        assertEquals(fingerprinter.fingerprint(data), fingerprinter.fingerprint(direct));
+    }
+
+    @Test
+    void prehashOnlyReusesDigestsOfIdenticalChunks() {
+        Random random = new Random(2);
+        byte[] a = new byte[4096];
+        byte[] b = new byte[4096];
+        random.nextBytes(a);
+        random.nextBytes(b);
+        List<byte[]> batch = List.of(a, b, a.clone(), b.clone(), a);
+
+        List<byte[]> screened = fingerprinter("xxh64").digestAll(batch);
+        List<byte[]> plain = fingerprinter("none").digestAll(batch);
+
+        for (int i = 0; i < batch.size(); i++) {
+            assertArrayEquals(plain.get(i), screened.get(i));
+        }
+        assertSame(screened.get(0), screened.get(2));
+        assertNotSame(screened.get(0), screened.get(1));
+        assertNotSame(plain.get(0), plain.get(2));
+    }
+
+    @Test
+    void keysRoundTripThroughHex() {
+        byte[] key = fingerprinter("none").digest("abc".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(64, Fingerprinter.toHex(key).length());
+        assertArrayEquals(key, Fingerprinter.toKey(Fingerprinter.toHex(key)));
+    }
+
+    @Test
+    void rejectsUnknownPreHash() {
+        assertThrows(IllegalArgumentException.class, () -> fingerprinter("md5"));
+    }
+
+    private static Fingerprinter fingerprinter(String prehash) {
+        return new Fingerprinter(prehash);
+    }
+}